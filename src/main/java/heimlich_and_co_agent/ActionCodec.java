@@ -0,0 +1,371 @@
+package heimlich_and_co_agent;
+
+import heimlich_and_co.HeimlichAndCo;
+import heimlich_and_co.actions.HeimlichAndCoAction;
+import heimlich_and_co.actions.HeimlichAndCoAgentMoveAction;
+import heimlich_and_co.actions.HeimlichAndCoCardAction;
+import heimlich_and_co.actions.HeimlichAndCoDieRollAction;
+import heimlich_and_co.actions.HeimlichAndCoSafeMoveAction;
+import heimlich_and_co.cards.HeimlichAndCoAddScorePointsCard;
+import heimlich_and_co.cards.HeimlichAndCoCard;
+import heimlich_and_co.cards.HeimlichAndCoMoveSafeCard;
+import heimlich_and_co.enums.Agent;
+import heimlich_and_co.factories.HeimlichAndCoCardStackFactory;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Encodes actions into a single primitive int and back.
+ * <p>
+ * The engine does not expose the content of its actions (e.g. the agent moves of a HeimlichAndCoAgentMoveAction),
+ * therefore the relevant fields are read once via reflection. The resulting codes are stable across JVMs and can be
+ * written to disk (e.g. the opening book).
+ * <p>
+ * Layout (bits 26-28 hold the action type):
+ * <ul>
+ *     <li>die roll: bit 5 set for a random roll, otherwise bits 0-4 hold the rolled face</li>
+ *     <li>agent move: 3 bits of steps per agent (in Agent ordinal order)</li>
+ *     <li>safe move: the new safe location</li>
+ *     <li>card: 0 for skipping, otherwise card kind, up to two agents and the number (see {@link #encodeCard})</li>
+ * </ul>
+ */
+public final class ActionCodec {
+
+    public static final int TYPE_DIE_ROLL = 0;
+    public static final int TYPE_AGENT_MOVE = 1;
+    public static final int TYPE_SAFE_MOVE = 2;
+    public static final int TYPE_CARD = 3;
+
+    private static final int TYPE_SHIFT = 26;
+    private static final int PAYLOAD_MASK = (1 << TYPE_SHIFT) - 1;
+    private static final int RANDOM_ROLL_FLAG = 1 << 5;
+    private static final int BITS_PER_AGENT = 3;
+    private static final int STEP_MASK = (1 << BITS_PER_AGENT) - 1;
+    private static final int NUMBER_OFFSET = 8;
+    private static final int AGENTS = Agent.values().length;
+
+    /**
+     * Number of distinct card kinds: the 12 types of agent moving cards, the safe moving card and the score card.
+     */
+    public static final int NUMBER_OF_CARD_KINDS = 14;
+
+    private static final Field AGENTS_MOVES = accessibleField(HeimlichAndCoAgentMoveAction.class, "agentsMoves");
+    private static final Field DIE_ROLL = accessibleField(HeimlichAndCoDieRollAction.class, "dieRoll");
+    private static final Field RANDOM_ROLL = accessibleField(HeimlichAndCoDieRollAction.class, "randomRoll");
+    private static final Field NEW_SAFE_LOCATION = accessibleField(HeimlichAndCoSafeMoveAction.class, "newSafeLocation");
+    private static final Field CARD = accessibleField(HeimlichAndCoCardAction.class, "card");
+    private static final Field CARD_AGENTS = accessibleField(HeimlichAndCoCardAction.class, "agents");
+    private static final Field CARD_NUMBER = accessibleField(HeimlichAndCoCardAction.class, "number");
+
+    /**
+     * One card of every kind, indexed by the kind, to create cards without a game.
+     */
+    private static final HeimlichAndCoCard[] CARDS_BY_KIND = cardsByKind();
+
+    private ActionCodec() {
+    }
+
+    /**
+     * Encodes an action into an int. Two actions that are equal according to the engine get the same code.
+     *
+     * @param action to encode
+     * @return the code of the action
+     */
+    public static int encode(HeimlichAndCoAction action) {
+        if (action instanceof HeimlichAndCoAgentMoveAction) {
+            int payload = 0;
+            for (Map.Entry<Agent, Integer> entry : agentsMoves((HeimlichAndCoAgentMoveAction) action).entrySet()) {
+                payload |= (entry.getValue() & STEP_MASK) << (entry.getKey().ordinal() * BITS_PER_AGENT);
+            }
+            return (TYPE_AGENT_MOVE << TYPE_SHIFT) | payload;
+        } else if (action instanceof HeimlichAndCoCardAction) {
+            return (TYPE_CARD << TYPE_SHIFT) | encodeCard((HeimlichAndCoCardAction) action);
+        } else if (action instanceof HeimlichAndCoSafeMoveAction) {
+            return (TYPE_SAFE_MOVE << TYPE_SHIFT) | getInt(NEW_SAFE_LOCATION, action);
+        } else if (action instanceof HeimlichAndCoDieRollAction) {
+            if (getBoolean(RANDOM_ROLL, action)) {
+                return (TYPE_DIE_ROLL << TYPE_SHIFT) | RANDOM_ROLL_FLAG;
+            }
+            return (TYPE_DIE_ROLL << TYPE_SHIFT) | getInt(DIE_ROLL, action);
+        }
+        throw new IllegalArgumentException("Unknown action type: " + action);
+    }
+
+    /**
+     * Converts a code back into an action of the given game. Die rolls are created directly, all other actions are
+     * looked up in the possible actions of the game.
+     *
+     * @param code of the action
+     * @param game in which the action should be played
+     * @return the matching action or null if no possible action has the given code
+     */
+    public static HeimlichAndCoAction decode(int code, HeimlichAndCo game) {
+        if (getType(code) == TYPE_DIE_ROLL) {
+            HeimlichAndCoAction roll = (code & RANDOM_ROLL_FLAG) != 0
+                    ? HeimlichAndCoDieRollAction.getRandomRollAction()
+                    : new HeimlichAndCoDieRollAction(code & PAYLOAD_MASK);
+            return game.isValidAction(roll) ? roll : null;
+        }
+        for (HeimlichAndCoAction action : game.getPossibleActions()) {
+            if (encode(action) == code) {
+                return action;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Creates the action of a code without a game, e.g. for action records read from a file. Unlike
+     * {@link #decode(int, HeimlichAndCo)} the action is not checked against a game.
+     *
+     * @param code        of the action
+     * @param rolledValue face of a die roll; the code of a random roll does not hold it, but a random roll in the action
+     *                    records knows its face (see {@link #getRolledValue}). Ignored for other actions.
+     * @return a new action with the given code
+     * @throws IllegalArgumentException if the code is not a valid action code
+     */
+    public static HeimlichAndCoAction create(int code, int rolledValue) {
+        int payload = code & PAYLOAD_MASK;
+        switch (getType(code)) {
+            case TYPE_DIE_ROLL:
+                if ((payload & RANDOM_ROLL_FLAG) == 0) {
+                    return new HeimlichAndCoDieRollAction(payload);
+                }
+                HeimlichAndCoDieRollAction roll = HeimlichAndCoDieRollAction.getRandomRollAction();
+                setInt(DIE_ROLL, roll, rolledValue);
+                return roll;
+            case TYPE_AGENT_MOVE:
+                EnumMap<Agent, Integer> moves = new EnumMap<>(Agent.class);
+                for (Agent agent : Agent.values()) {
+                    int steps = getSteps(code, agent);
+                    if (steps > 0) {
+                        moves.put(agent, steps);
+                    }
+                }
+                return moves.isEmpty() ? HeimlichAndCoAgentMoveAction.getNoMoveAction() : new HeimlichAndCoAgentMoveAction(moves);
+            case TYPE_SAFE_MOVE:
+                return new HeimlichAndCoSafeMoveAction(payload);
+            case TYPE_CARD:
+                return payload == 0 ? HeimlichAndCoCardAction.getSkipCardAction() : createCardAction(payload);
+            default:
+                throw new IllegalArgumentException(String.format("Not an action code: %08x", code));
+        }
+    }
+
+    /**
+     * Creates a card of the given kind (see {@link #getCardKind}), e.g. for cards read from a file.
+     *
+     * @throws IllegalArgumentException if there is no such kind
+     */
+    public static HeimlichAndCoCard newCard(int kind) {
+        if (kind < 0 || kind >= NUMBER_OF_CARD_KINDS) {
+            throw new IllegalArgumentException("Not a card kind: " + kind);
+        }
+        return CARDS_BY_KIND[kind].deepCopy();
+    }
+
+    public static int getType(int code) {
+        return code >>> TYPE_SHIFT;
+    }
+
+    /**
+     * Returns the face that was rolled by a die roll action. For random rolls this is only known after the action was
+     * applied (e.g. for actions taken from the action records).
+     */
+    public static int getRolledValue(HeimlichAndCoDieRollAction action) {
+        return getInt(DIE_ROLL, action);
+    }
+
+    /**
+     * Returns the steps of the given agent in an agent move code.
+     */
+    public static int getSteps(int code, Agent agent) {
+        return (code >>> (agent.ordinal() * BITS_PER_AGENT)) & STEP_MASK;
+    }
+
+    /**
+     * Writes the steps of all agents in an agent move code into an array indexed by the ordinal of the agents.
+     *
+     * @param code  of an agent move
+     * @param steps receives the steps, at least as long as the number of agents
+     */
+    public static void getSteps(int code, int[] steps) {
+        for (int agent = 0; agent < AGENTS; agent++) {
+            steps[agent] = (code >>> (agent * BITS_PER_AGENT)) & STEP_MASK;
+        }
+    }
+
+    /**
+     * Returns the agent move code with the steps of the given agent replaced.
+     */
+    public static int withSteps(int code, Agent agent, int steps) {
+        int shift = agent.ordinal() * BITS_PER_AGENT;
+        return (code & ~(STEP_MASK << shift)) | ((steps & STEP_MASK) << shift);
+    }
+
+    /**
+     * Returns the actions ordered by their codes. The sets of the engine iterate in an order that depends on identity
+     * hash codes (e.g. of the agents), which differs from run to run; this order is the same in every JVM.
+     *
+     * @param actions to order
+     * @return a new array with the actions in ascending order of their codes
+     */
+    public static HeimlichAndCoAction[] sortByCode(Collection<HeimlichAndCoAction> actions) {
+        HeimlichAndCoAction[] unsorted = actions.toArray(new HeimlichAndCoAction[0]);
+        // codes are non-negative, so code and index can be packed into one long and sorted together
+        long[] keys = new long[unsorted.length];
+        for (int i = 0; i < unsorted.length; i++) {
+            keys[i] = ((long) encode(unsorted[i]) << Integer.SIZE) | i;
+        }
+        Arrays.sort(keys);
+        HeimlichAndCoAction[] sorted = new HeimlichAndCoAction[unsorted.length];
+        for (int i = 0; i < keys.length; i++) {
+            sorted[i] = unsorted[(int) keys[i]];
+        }
+        return sorted;
+    }
+
+    /**
+     * Describes an action by its code alone, without a game to decode it in (e.g. for codes read from a file).
+     *
+     * @return e.g. "move PERRY+2 DOYLE+1", "roll 4", "random roll", "safe to 7", "skip card" or "card 3 (JAQUES, +2)"
+     */
+    public static String describe(int code) {
+        int payload = code & PAYLOAD_MASK;
+        switch (getType(code)) {
+            case TYPE_DIE_ROLL:
+                return (payload & RANDOM_ROLL_FLAG) != 0 ? "random roll" : "roll " + payload;
+            case TYPE_AGENT_MOVE:
+                StringBuilder move = new StringBuilder("move");
+                for (Agent agent : Agent.values()) {
+                    int steps = getSteps(code, agent);
+                    if (steps > 0) {
+                        move.append(' ').append(agent).append('+').append(steps);
+                    }
+                }
+                return move.toString();
+            case TYPE_SAFE_MOVE:
+                return "safe to " + payload;
+            case TYPE_CARD:
+                if (payload == 0) {
+                    return "skip card";
+                }
+                StringBuilder card = new StringBuilder("card ").append((payload >>> 14) - 1).append(" (");
+                for (int agent : new int[]{(payload >>> 11) & STEP_MASK, (payload >>> 8) & STEP_MASK}) {
+                    if (agent > 0) {
+                        card.append(Agent.values()[agent - 1]).append(", ");
+                    }
+                }
+                return card.append(String.format("%+d)", (payload & 0x1F) - NUMBER_OFFSET)).toString();
+            default:
+                return String.format("unknown %08x", code);
+        }
+    }
+
+    /**
+     * Returns the kind of a card: 0-11 for the types of agent moving cards, 12 for the safe moving card and 13 for the
+     * score card.
+     */
+    public static int getCardKind(HeimlichAndCoCard card) {
+        if (card instanceof HeimlichAndCoMoveSafeCard) {
+            return 12;
+        } else if (card instanceof HeimlichAndCoAddScorePointsCard) {
+            return 13;
+        }
+        return card.getCardSpecification().type;
+    }
+
+    /**
+     * Encodes a card action: bits 14-17 hold the card kind + 1 (0 means skip), bits 11-13 and 8-10 the first and second
+     * agent + 1 (0 means none), bits 0-4 the number + 8.
+     */
+    private static int encodeCard(HeimlichAndCoCardAction action) {
+        HeimlichAndCoCard card = (HeimlichAndCoCard) get(CARD, action);
+        if (card == null) {
+            return 0;
+        }
+        Agent[] agents = (Agent[]) get(CARD_AGENTS, action);
+        int first = agents != null && agents.length > 0 ? agents[0].ordinal() + 1 : 0;
+        int second = agents != null && agents.length > 1 ? agents[1].ordinal() + 1 : 0;
+        int number = (getInt(CARD_NUMBER, action) + NUMBER_OFFSET) & 0x1F;
+        return ((getCardKind(card) + 1) << 14) | (first << 11) | (second << 8) | number;
+    }
+
+    /**
+     * Inverse of {@link #encodeCard} for a card that was played; the agents are null if the card moves none (like the
+     * engine creates the actions of the safe moving card).
+     */
+    private static HeimlichAndCoCardAction createCardAction(int payload) {
+        int first = (payload >>> 11) & STEP_MASK;
+        int second = (payload >>> 8) & STEP_MASK;
+        if (first > AGENTS || second > AGENTS) {
+            throw new IllegalArgumentException(String.format("Not a card action code: %08x", payload));
+        }
+        Agent[] agents = null;
+        if (second > 0) {
+            agents = new Agent[]{Agent.values()[first - 1], Agent.values()[second - 1]};
+        } else if (first > 0) {
+            agents = new Agent[]{Agent.values()[first - 1]};
+        }
+        return new HeimlichAndCoCardAction(newCard((payload >>> 14) - 1), agents, (payload & 0x1F) - NUMBER_OFFSET);
+    }
+
+    private static HeimlichAndCoCard[] cardsByKind() {
+        HeimlichAndCoCard[] cards = new HeimlichAndCoCard[NUMBER_OF_CARD_KINDS];
+        for (HeimlichAndCoCard card : HeimlichAndCoCardStackFactory.newInstance().getCards()) {
+            cards[getCardKind(card)] = card;
+        }
+        return cards;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Agent, Integer> agentsMoves(HeimlichAndCoAgentMoveAction action) {
+        return (Map<Agent, Integer>) get(AGENTS_MOVES, action);
+    }
+
+    private static Object get(Field field, Object target) {
+        try {
+            return field.get(target);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Could not read " + field.getName(), e);
+        }
+    }
+
+    private static int getInt(Field field, Object target) {
+        try {
+            return field.getInt(target);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Could not read " + field.getName(), e);
+        }
+    }
+
+    private static void setInt(Field field, Object target, int value) {
+        try {
+            field.setInt(target, value);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Could not write " + field.getName(), e);
+        }
+    }
+
+    private static boolean getBoolean(Field field, Object target) {
+        try {
+            return field.getBoolean(target);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Could not read " + field.getName(), e);
+        }
+    }
+
+    private static Field accessibleField(Class<?> clazz, String name) {
+        try {
+            Field field = clazz.getDeclaredField(name);
+            field.setAccessible(true);
+            return field;
+        } catch (NoSuchFieldException e) {
+            throw new IllegalStateException("Engine class " + clazz.getSimpleName() + " has no field " + name, e);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package heimlich_and_co_agent;
+
+import java.util.*;
+import heimlich_and_co.HeimlichAndCoBoard;
+import heimlich_and_co.cards.HeimlichAndCoCard;
+import heimlich_and_co.cards.HeimlichAndCoMoveAgentsCard;
+import heimlich_and_co.enums.Agent;
+
+/**
+ * CardBeliefModel estimates which cards the players hold from their card phases, so the determinization deals
+ * plausible hands instead of uniform ones.
+ * Per player and card type it keeps a weight: how likely the player holds a card of that type compared to a card
+ * nothing is known about (weight 1). Skipping the card phase while holding cards lowers the weights of the types that
+ * would have helped the player on that board. Drawing a card moves the weights back towards 1, because the new card is
+ * a random one.
+ */
+public class CardBeliefModel {
+  // A skip while holding a playable card is at least this likely, so no card is ever ruled out
+  private static final double MIN_SKIP_LIKELIHOOD = 0.2;
+  // Play rate assumed while a player has not made any card decisions
+  private static final double DEFAULT_PLAY_RATE = 0.5;
+  // Move agent cards that need a certain board to be played: away from the safe (4) and from the ruins into the
+  // church (9). All other cards can be played in almost every card phase, so skipping says nothing about them.
+  private static final int AWAY_FROM_SAFE_TYPE = 4;
+  private static final int RUINS_TO_CHURCH_TYPE = 9;
+  // Card type of the move agent cards among the types, -1 for all other cards
+  private static final int NOT_SITUATIONAL = -1;
+
+  // Distinct cards of the game, equal cards share a type and therefore a weight
+  private final List<HeimlichAndCoCard> types;
+  // Card type of the situational types (see AWAY_FROM_SAFE_TYPE), NOT_SITUATIONAL for the others
+  private final int[] situation;
+
+  /**
+   * 2D Array: [PlayerID][Type]
+   * Relative likelihood of holding a card of the type, the largest weight of a player is 1.
+   */
+  private final double[][] weights;
+
+  /**
+   * @param cards      All cards of the game.
+   * @param numPlayers Total players from game.getNumberOfPlayers().
+   */
+  public CardBeliefModel(List<HeimlichAndCoCard> cards, int numPlayers) {
+    this.types = new ArrayList<>();
+    for (HeimlichAndCoCard card : cards) {
+      if (!types.contains(card)) {
+        types.add(card);
+      }
+    }
+    this.situation = new int[types.size()];
+    for (int type = 0; type < situation.length; type++) {
+      HeimlichAndCoCard card = types.get(type);
+      int cardType = card.getCardSpecification().type;
+      boolean situational = card instanceof HeimlichAndCoMoveAgentsCard
+          && (cardType == AWAY_FROM_SAFE_TYPE || cardType == RUINS_TO_CHURCH_TYPE);
+      situation[type] = situational ? cardType : NOT_SITUATIONAL;
+    }
+    this.weights = new double[numPlayers][types.size()];
+    for (double[] playerWeights : weights) {
+      Arrays.fill(playerWeights, 1.0);
+    }
+  }
+
+  /**
+   * Updates the weights of a player who skipped the card phase while holding cards. Only the situational types tell
+   * something: a player whose agent is in the ruins and who holds the card that takes it to the church plays it with
+   * its play rate, so it holds the card with the likelihood 1 - play rate * P(the agent in the ruins is its own); the
+   * card that moves an agent away from the safe helps if an agent of somebody else is with the safe. The other types
+   * can be played in almost every card phase and would lower all weights alike, so they are left as they are.
+   *
+   * @param playRate   how likely the player plays a card when it has one, NaN if unknown
+   * @param identities suspicion of the player per agent, up to date with the board
+   */
+  public void recordSkip(int playerID, double playRate, HeimlichAndCoBoard board, IdentityTracker identities) {
+    double rate = Double.isNaN(playRate) ? DEFAULT_PLAY_RATE : playRate;
+    double helpInRuins = 0;
+    double helpAtSafe = 0;
+    Agent[] agents = board.getAgents();
+    double totalSuspicion = 0;
+    for (Agent agent : agents) {
+      totalSuspicion += identities.getSuspicion(playerID, agent);
+    }
+    for (Agent agent : agents) {
+      // Without any moves of the player, every agent is its own with the same probability
+      double own = totalSuspicion > 0 ? identities.getSuspicion(playerID, agent) / totalSuspicion : 1.0 / agents.length;
+      int position = board.getAgentsPositions().get(agent);
+      if (position == HeimlichAndCoBoard.getRuinsField()) {
+        helpInRuins += own;
+      }
+      if (position == board.getSafePosition()) {
+        helpAtSafe += 1.0 - own;
+      }
+    }
+    double[] playerWeights = weights[playerID];
+    double max = 0;
+    for (int type = 0; type < playerWeights.length; type++) {
+      if (situation[type] != NOT_SITUATIONAL) {
+        double help = Math.min(1.0, situation[type] == RUINS_TO_CHURCH_TYPE ? helpInRuins : helpAtSafe);
+        playerWeights[type] *= Math.max(MIN_SKIP_LIKELIHOOD, 1.0 - rate * help);
+      }
+      max = Math.max(max, playerWeights[type]);
+    }
+    // Normalize, so the weights do not vanish over a long game
+    for (int type = 0; type < playerWeights.length; type++) {
+      playerWeights[type] /= max;
+    }
+  }
+
+  /**
+   * Updates the weights of a player who drew a card: of the cards on hand afterwards, the old ones keep their evidence
+   * and the drawn one is a random card.
+   *
+   * @param handSize cards on hand before drawing
+   */
+  public void recordGain(int playerID, int handSize) {
+    double[] playerWeights = weights[playerID];
+    for (int type = 0; type < playerWeights.length; type++) {
+      playerWeights[type] = (playerWeights[type] * handSize + 1.0) / (handSize + 1);
+    }
+  }
+
+  /**
+   * Forgets the evidence about a player who played a card and has none left on hand.
+   *
+   * @param handSize cards on hand after playing
+   */
+  public void recordPlay(int playerID, int handSize) {
+    if (handSize == 0) {
+      Arrays.fill(weights[playerID], 1.0);
+    }
+  }
+
+  /**
+   * Returns the relative likelihood that the player holds the card, 1 if nothing is known about it.
+   */
+  public double getWeight(int playerID, HeimlichAndCoCard card) {
+    int type = types.indexOf(card);
+    return type < 0 ? 1.0 : weights[playerID][type];
+  }
+
+  /**
+   * Draws a hand for a player from the pool, every card with probability proportional to its weight, and removes the
+   * drawn cards from the pool (which changes the order of the remaining ones).
+   * The pool holds at most the 25 cards of the game, so a linear scan over the cumulative weights is faster than
+   * building an alias table that would have to be rebuilt after every draw.
+   */
+  public List<HeimlichAndCoCard> sampleHand(int playerID, List<HeimlichAndCoCard> pool, int handSize, Random random) {
+    double[] poolWeights = new double[pool.size()];
+    double total = 0;
+    for (int k = 0; k < poolWeights.length; k++) {
+      poolWeights[k] = getWeight(playerID, pool.get(k));
+      total += poolWeights[k];
+    }
+
+    List<HeimlichAndCoCard> hand = new LinkedList<>();
+    int remaining = pool.size();
+    while (hand.size() < handSize && remaining > 0) {
+      double target = random.nextDouble() * total;
+      int drawn = 0;
+      while (drawn < remaining - 1 && target >= poolWeights[drawn]) {
+        target -= poolWeights[drawn];
+        drawn++;
+      }
+      hand.add(pool.get(drawn));
+      total -= poolWeights[drawn];
+
+      // The last card of the pool takes the place of the drawn one
+      remaining--;
+      pool.set(drawn, pool.get(remaining));
+      poolWeights[drawn] = poolWeights[remaining];
+      pool.remove(remaining);
+    }
+    return hand;
+  }
+}
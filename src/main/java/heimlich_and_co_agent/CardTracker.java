@@ -1,6 +1,7 @@
 package heimlich_and_co_agent;
 
 import java.util.*;
+import heimlich_and_co.HeimlichAndCoBoard;
 import heimlich_and_co.cards.HeimlichAndCoCard;
 import heimlich_and_co.factories.HeimlichAndCoCardStackFactory;
 import heimlich_and_co.util.CardStack;
@@ -9,10 +10,19 @@ public class CardTracker {
   private final List<HeimlichAndCoCard> totalCardsInGame;
   private final List<HeimlichAndCoCard> graveyard; // Played cards
   private final int[] playerCardCounts;
+  // Card phases in which a player held cards, and in how many of them it played one
+  private final int[] cardDecisions;
+  private final int[] cardsPlayed;
+  // Rate at which a player is expected to play a card before its first decision, NaN if unknown
+  private final double[] playRatePrior;
+  // Which cards the players are likely to hold, for dealing their hands in the determinization
+  private final CardBeliefModel beliefs;
 
   // Constants based on Section 6 of the game instructions
   private static final int INITIAL_CARDS_PER_PLAYER = 2;
   private static final int MAX_CARDS_PER_PLAYER = 4;
+  // Number of card decisions after which the observed play rate counts as much as the prior
+  private static final int PLAY_RATE_PRIOR_DECISIONS = 3;
 
   public CardTracker(int numPlayers) {
     // Use the factory to get the standard set of 25 implemented cards
@@ -23,12 +33,21 @@ public class CardTracker {
     while (initialStack.count() > 0) {
       totalCardsInGame.add(initialStack.drawCard());
     }
+    // The factory shuffles the stack. Sorted by kind, the trackers are the same for the same action records in every
+    // run, so a decision trace can rebuild them from the records
+    totalCardsInGame.sort(Comparator.comparingInt(ActionCodec::getCardKind));
 
     this.graveyard = new ArrayList<>();
     this.playerCardCounts = new int[numPlayers];
 
     // Corrected: Section 6 states "At the beginning of the game, each player receives two cards"
     Arrays.fill(playerCardCounts, INITIAL_CARDS_PER_PLAYER);
+
+    this.cardDecisions = new int[numPlayers];
+    this.cardsPlayed = new int[numPlayers];
+    this.playRatePrior = new double[numPlayers];
+    Arrays.fill(playRatePrior, Double.NaN);
+    this.beliefs = new CardBeliefModel(totalCardsInGame, numPlayers);
   }
 
   /**
@@ -38,6 +57,7 @@ public class CardTracker {
   public void recordCardGained(int playerID) {
     // Section 6: "A player can have 4 cards at most on hand."
     if (playerCardCounts[playerID] < MAX_CARDS_PER_PLAYER) {
+      beliefs.recordGain(playerID, playerCardCounts[playerID]);
       playerCardCounts[playerID]++;
     }
   }
@@ -48,9 +68,54 @@ public class CardTracker {
    */
   public void recordCardPlayed(int playerID, HeimlichAndCoCard card) {
     graveyard.add(card);
+    cardDecisions[playerID]++;
+    cardsPlayed[playerID]++;
     if (playerCardCounts[playerID] > 0) {
       playerCardCounts[playerID]--;
     }
+    beliefs.recordPlay(playerID, playerCardCounts[playerID]);
+  }
+
+  /**
+   * Tracks when a player skips the card phase. Skips without cards on hand are forced and not counted.
+   * The board is the one of the card phase, it tells which cards the player could have played; the identities tell
+   * which of them would have helped the player's own agent.
+   */
+  public void recordCardSkipped(int playerID, HeimlichAndCoBoard board, IdentityTracker identities) {
+    if (playerCardCounts[playerID] > 0) {
+      // Only the suspicion of the player is needed, and only as far as its moves up to this card phase tell
+      identities.calculateSuspicion(playerID);
+      beliefs.recordSkip(playerID, getCardPlayRate(playerID), board, identities);
+      cardDecisions[playerID]++;
+    }
+  }
+
+  /**
+   * Sets the rate at which a player is expected to play a card before it has made any decisions, e.g. from an opponent
+   * profile.
+   */
+  public void setPlayRatePrior(int playerID, double rate) {
+    playRatePrior[playerID] = rate;
+  }
+
+  /**
+   * Estimates how likely the player plays a card when it has one: the observed rate, shrunk towards the prior while
+   * only few decisions have been seen. NaN if there is neither a prior nor a decision.
+   */
+  public double getCardPlayRate(int playerID) {
+    double prior = playRatePrior[playerID];
+    if (Double.isNaN(prior)) {
+      return cardDecisions[playerID] == 0 ? Double.NaN : (double) cardsPlayed[playerID] / cardDecisions[playerID];
+    }
+    return (cardsPlayed[playerID] + prior * PLAY_RATE_PRIOR_DECISIONS) / (cardDecisions[playerID] + PLAY_RATE_PRIOR_DECISIONS);
+  }
+
+  public int getCardDecisions(int playerID) {
+    return cardDecisions[playerID];
+  }
+
+  public int getCardsPlayed(int playerID) {
+    return cardsPlayed[playerID];
   }
 
   /**
@@ -68,6 +133,14 @@ public class CardTracker {
     return hiddenPool;
   }
 
+  /**
+   * Deals a player a hand of its tracked size from the hidden pool, preferring the cards it is likely to hold (see
+   * CardBeliefModel). The dealt cards are removed from the pool.
+   */
+  public List<HeimlichAndCoCard> dealHand(int playerID, List<HeimlichAndCoCard> hiddenPool, Random random) {
+    return beliefs.sampleHand(playerID, hiddenPool, playerCardCounts[playerID], random);
+  }
+
   public int getPlayerCardCount(int playerID) {
     return playerCardCounts[playerID];
   }
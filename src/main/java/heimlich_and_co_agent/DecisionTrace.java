@@ -0,0 +1,154 @@
+package heimlich_and_co_agent;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Everything needed to replay a decision of a seeded search bit for bit: the seed, the iteration budget, the search
+ * parameters, the game as the agent saw it and the priors of its trackers before the decision (see
+ * {@link StateSnapshot}), and the outcome of the decision to compare the replay with.
+ * <p>
+ * Written by DetectiveGoetzbach when a trace directory is set (see {@link DetectiveGoetzbach#setTraceDirectory}),
+ * replayed by {@link DetectiveGoetzbach#replay(DecisionTrace)} (e.g. via heimlich_and_co_tools.DecisionReplay).
+ */
+public final class DecisionTrace {
+
+    private static final int MAGIC = 0x44475452; // "DGTR"
+    private static final int VERSION = 2;
+
+    private final long seed;
+    private final int iterations;
+    private final int leafBatchSize;
+    private final SearchParameters parameters;
+    private final int playerId;
+    private final int numberOfPlayers;
+    private final byte[] state;
+    private final int actionCode;
+    private final int rootPlayouts;
+    private final double rootValue;
+
+    /**
+     * @param seed            seed of the search
+     * @param iterations      iteration budget of the search, 0 if it was limited by time (and cannot be replayed exactly)
+     * @param leafBatchSize   playouts per expanded node of the search
+     * @param parameters      constants of the search
+     * @param playerId        player the agent played
+     * @param numberOfPlayers players in the game
+     * @param state           snapshot of the game and the priors of the trackers before the decision
+     * @param actionCode      code of the chosen action (see {@link ActionCodec})
+     * @param rootPlayouts    playouts of the search root, -1 if the action was not chosen by MCTS
+     * @param rootValue       Q(s,a) of the chosen action, NaN if the action was not chosen by MCTS
+     */
+    public DecisionTrace(long seed, int iterations, int leafBatchSize, SearchParameters parameters, int playerId,
+                         int numberOfPlayers, byte[] state, int actionCode, int rootPlayouts, double rootValue) {
+        this.seed = seed;
+        this.iterations = iterations;
+        this.leafBatchSize = leafBatchSize;
+        this.parameters = parameters;
+        this.playerId = playerId;
+        this.numberOfPlayers = numberOfPlayers;
+        this.state = state;
+        this.actionCode = actionCode;
+        this.rootPlayouts = rootPlayouts;
+        this.rootValue = rootValue;
+    }
+
+    /**
+     * Reads a trace written by {@link #write(Path)}.
+     *
+     * @throws IOException if the file cannot be read or is not a decision trace
+     */
+    public static DecisionTrace read(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a decision trace: " + path);
+            }
+            long seed = in.readLong();
+            int iterations = in.readInt();
+            int leafBatchSize = in.readInt();
+            SearchParameters parameters = SearchParameters.defaults();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                parameters = parameters.with(in.readUTF(), in.readDouble());
+            }
+            int playerId = in.readInt();
+            int numberOfPlayers = in.readInt();
+            byte[] state = new byte[in.readInt()];
+            in.readFully(state);
+            return new DecisionTrace(seed, iterations, leafBatchSize, parameters, playerId, numberOfPlayers, state,
+                    in.readInt(), in.readInt(), in.readDouble());
+        }
+    }
+
+    public void write(Path path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(seed);
+            out.writeInt(iterations);
+            out.writeInt(leafBatchSize);
+            String[] names = SearchParameters.names();
+            out.writeInt(names.length);
+            for (String name : names) {
+                out.writeUTF(name);
+                out.writeDouble(parameters.get(name));
+            }
+            out.writeInt(playerId);
+            out.writeInt(numberOfPlayers);
+            out.writeInt(state.length);
+            out.write(state);
+            out.writeInt(actionCode);
+            out.writeInt(rootPlayouts);
+            out.writeDouble(rootValue);
+        }
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    public int getLeafBatchSize() {
+        return leafBatchSize;
+    }
+
+    public SearchParameters getParameters() {
+        return parameters;
+    }
+
+    public int getPlayerId() {
+        return playerId;
+    }
+
+    public int getNumberOfPlayers() {
+        return numberOfPlayers;
+    }
+
+    /**
+     * @return snapshot of the game and the priors of the trackers before the decision, read with
+     * {@link StateSnapshot#read}
+     */
+    public byte[] getState() {
+        return state.clone();
+    }
+
+    public int getActionCode() {
+        return actionCode;
+    }
+
+    public int getRootPlayouts() {
+        return rootPlayouts;
+    }
+
+    public double getRootValue() {
+        return rootValue;
+    }
+}
@@ -4,41 +4,127 @@ import at.ac.tuwien.ifs.sge.agent.AbstractGameAgent;
 import at.ac.tuwien.ifs.sge.agent.GameAgent;
 import at.ac.tuwien.ifs.sge.engine.Logger;
 import at.ac.tuwien.ifs.sge.game.ActionRecord;
+import at.ac.tuwien.ifs.sge.util.pair.ImmutablePair;
 import at.ac.tuwien.ifs.sge.util.pair.Pair;
 import heimlich_and_co.HeimlichAndCo;
 import heimlich_and_co.HeimlichAndCoBoard;
 import heimlich_and_co.actions.HeimlichAndCoAction;
 import heimlich_and_co.actions.HeimlichAndCoAgentMoveAction;
 import heimlich_and_co.actions.HeimlichAndCoCardAction;
+import heimlich_and_co.actions.HeimlichAndCoDieRollAction;
 import heimlich_and_co.cards.HeimlichAndCoCard;
 import heimlich_and_co.enums.Agent;
+import heimlich_and_co.enums.HeimlichAndCoPhase;
+import heimlich_and_co.util.CardStack;
 import heimlich_and_co_mcts_agent.HeimlichAndCoMCTSAgent;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
 
 public class DetectiveGoetzbach extends AbstractGameAgent<HeimlichAndCo, HeimlichAndCoAction> implements GameAgent<HeimlichAndCo, HeimlichAndCoAction> {
 
     /**
-     * determines the depth of termination for random playouts
-     * can be set to -1 to always play out till the game ends
+     * Location of the search parameter profile (see {@link SearchParameters}), e.g. generated by
+     * heimlich_and_co_tools.ParameterTuner. Can be overridden with the system property "detective.profile".
      */
-    private static final int TERMINATION_DEPTH = 64;
+    private static final String PROFILE_PATH = System.getProperty("detective.profile", "detective_goetzbach.profile");
+
+    /**
+     * Location of the opening book generated by heimlich_and_co_tools.OpeningBookGenerator.
+     * Can be overridden with the system property "detective.openingBook".
+     */
+    private static final String OPENING_BOOK_PATH = System.getProperty("detective.openingBook", "detective_goetzbach.book");
+
+    /**
+     * Most full turns the endgame solver searches, the current one included. The solver only answers if the game is
+     * decided within them.
+     */
+    private static final int ENDGAME_TURNS = 2;
+
+    /**
+     * Maximum number of states the endgame solver evaluates before it gives up and MCTS is used instead.
+     */
+    private static final int ENDGAME_NODE_BUDGET = 50_000;
+
+    /**
+     * Number of playouts that are run in parallel from every newly expanded node (leaf parallelization).
+     * Larger batches use more cores, but the tree grows by only one node per batch, so they trade tree quality for
+     * throughput. 1 by default (no parallel playouts), so the search is the same on every machine; batching is enabled
+     * with the system property "detective.leafBatchSize".
+     */
+    private static final int LEAF_BATCH_SIZE = Math.max(1, Integer.getInteger("detective.leafBatchSize", 1));
+
+    /**
+     * Pool for the searches of the decisions, the pondering searches and the batched playouts, shared by all instances
+     * so the machine is not oversubscribed. A tree is only touched by the thread that searches it. It has at least two
+     * threads, so a new decision can search while a search that missed its deadline finishes its last step.
+     */
+    private static final ForkJoinPool SEARCH_POOL = new ForkJoinPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+
+    /**
+     * How long before the timeout of the SGE the watchdog tells the search to stop, if it has not stopped by then. Can be
+     * overridden with the system property "detective.deadlineMarginMillis".
+     */
+    private static final long DEADLINE_MARGIN_MILLIS = Long.getLong("detective.deadlineMarginMillis", 150);
+
+    /**
+     * How long the watchdog waits for the search to stop once the deadline is reached, before it abandons the search and
+     * plays the best action the search published so far.
+     */
+    private static final long DEADLINE_GRACE_MILLIS = 30;
+
+    /**
+     * Iterations after which the search publishes its best root action for the watchdog (see
+     * {@link MCTSNode#publishBestActionSoFar()}).
+     */
+    private static final int PUBLISH_INTERVAL = 64;
 
     // Trackers for rational decision-making
     private DiceTracker diceTracker;
     private CardTracker cardTracker;
 
 
+    // Profile each player's trackers got as prior (null for players without one), kept for the decision traces
+    private OpponentProfiles.Profile[] priorProfiles;
+
     // Tracks the board state incrementally to compare positions
     private HeimlichAndCoBoard trackedBoard;
     // Ensures we only process each ActionRecord once
     private int lastProcessedActionIndex = 0;
+    // Steps per agent of the move being tracked, reused for every move
+    private final int[] turnSteps = new int[Agent.values().length];
+    // Cards of the game without the one just played, reused to identify every played card
+    private final List<HeimlichAndCoCard> identificationList = new ArrayList<>();
     // Suspicion Meter
     private IdentityTracker identityTracker;
 
     private HeimlichAndCoMCTSAgent MCTSAgent;
 
+    // Opening book shared by all instances (guarded by the class), null if no book is available
+    private static OpeningBook sharedOpeningBook;
+    private static boolean sharedOpeningBookLoaded;
+
+    // Precomputed opening moves, null if no book is available
+    private final OpeningBook openingBook;
+    // Tunable constants of the search (termination depth, opening rolls, exploration constant, ...)
+    private final SearchParameters parameters;
+
     /**
      * Determines the strategy for dealing with the randomness of a die roll.
      * <p>
@@ -51,81 +137,909 @@ public class DetectiveGoetzbach extends AbstractGameAgent<HeimlichAndCo, Heimlic
      */
     private static final boolean SIMULATE_ALL_DIE_OUTCOMES = true;
 
+    /**
+     * Whether forced actions (single safe moves, skipping the card phase without cards, ...) are collapsed into the
+     * edge of the action leading to them, instead of getting a tree level of their own.
+     */
+    private static final boolean COMPACT_TREE = true;
+
+    /**
+     * Whether to keep searching in the background after our move was returned (while the opponents think).
+     */
+    private static final boolean PONDER = true;
+
+    /**
+     * Whether the root action is chosen by sequential halving over the root candidates (see
+     * {@link #runSequentialHalving}) instead of by UCT, which spends a short budget better on finding the single best
+     * action. Enabled with the system property "detective.sequentialHalving".
+     */
+    private static final boolean SEQUENTIAL_HALVING = Boolean.getBoolean("detective.sequentialHalving");
+
+    /**
+     * How long to wait for the background search to finish its current iteration, a single playout can take seconds.
+     */
+    private static final long PONDER_JOIN_MILLIS = 50;
+
+    /**
+     * How long the synthetic search in {@link #setUp(int, int)} runs, so the hot paths are JIT-compiled before the
+     * first timed move. Can be overridden with the system property "detective.warmUpMillis"; 0 disables the warm-up.
+     */
+    private static final long WARM_UP_MILLIS = Long.getLong("detective.warmUpMillis", 1000);
+
+    /**
+     * Number of random actions played before the warm-up search, so it runs on a position with typical branching
+     * instead of the opening.
+     */
+    private static final int WARM_UP_PLIES = 30;
+
+    // The JIT works per JVM, so only the first instance warms up
+    private static final AtomicBoolean WARMED_UP = new AtomicBoolean();
+
+    /**
+     * Seed of the deterministic search mode (see {@link #setDeterministic(long, int)}), set with the system property
+     * "detective.seed". Null (the default) searches with unseeded random numbers.
+     */
+    private static final Long SEED = Long.getLong("detective.seed");
+
+    /**
+     * Number of search iterations per decision instead of the time limit, set with the system property
+     * "detective.iterations". 0 (the default) searches until the time is up.
+     */
+    private static final int ITERATIONS = Integer.getInteger("detective.iterations", 0);
+
+    /**
+     * Directory the seeded decisions are written to as {@link DecisionTrace}s, set with the system property
+     * "detective.traceDir". Null (the default) writes no traces.
+     */
+    private static final String TRACE_DIRECTORY = System.getProperty("detective.traceDir");
+
+    /**
+     * Directory the search trees of the decisions are written to as {@link TreeSnapshot}s, set with the system property
+     * "detective.treeDir". Null (the default) writes no snapshots.
+     */
+    private static final String TREE_DIRECTORY = System.getProperty("detective.treeDir");
+
+    /**
+     * Children kept per node of a tree snapshot, the most visited ones.
+     */
+    private static final int TREE_SNAPSHOT_TOP_K = 5;
+
+    /**
+     * Maximum number of nodes of a tree snapshot, so writing it stays cheap compared to the search.
+     */
+    private static final int TREE_SNAPSHOT_NODE_BUDGET = 2_000;
+
+    /**
+     * Where the profiles of the opponents are kept (see {@link OpponentProfiles}), set with the system property
+     * "detective.opponentProfiles". Null (the default) neither uses nor updates profiles.
+     */
+    private static final String OPPONENT_PROFILES_PATH = System.getProperty("detective.opponentProfiles");
+
+    /**
+     * Names of the agents per seat, separated by commas, set with the system property "detective.opponents". The SGE
+     * does not tell agents who they play against; seats without a name are recorded in the profile
+     * {@link OpponentProfiles#UNKNOWN}, but get no prior from it: it pools all opponents, so it says little about any.
+     */
+    private static final String OPPONENT_NAMES = System.getProperty("detective.opponents");
+
+    /**
+     * Heap the value cache (see {@link ValueCache}) may use, can be overridden with the system property
+     * "detective.valueCacheBytes"; 0 disables the cache.
+     */
+    private static final long VALUE_CACHE_BYTES = Long.getLong("detective.valueCacheBytes", 32L << 20);
+
+    /**
+     * File the value cache is loaded from when the agent is created and saved to after every game, set with the system
+     * property "detective.valueCache". Null (the default) keeps the cache for the lifetime of the agent only.
+     */
+    private static final String VALUE_CACHE_PATH = System.getProperty("detective.valueCache");
+
+    /**
+     * Playouts a node needs to be stored in the value cache, fewer playouts say little about the state.
+     */
+    private static final int VALUE_CACHE_MIN_PLAYOUTS = 4;
+
+    // Background search between our turns, running on the playout pool; every run has a stop flag of its own, so a
+    // run that did not stop in time is never continued by the next one
+    private AtomicBoolean ponderStop;
+    private Future<?> ponderSearch;
+    private MCTSNode ponderTree;
+    private RolloutPolicy ponderPolicy;
+    private int ponderRecordIndex;
+
+    // Statistics of the root of the last search, -1 and NaN if the last action was not chosen by MCTS
+    private int lastRootPlayouts = -1;
+    private double lastRootValue = Double.NaN;
+
+    // Deterministic search mode, seed is null if the search is not seeded
+    private Long seed = SEED;
+    private int iterationBudget = ITERATIONS;
+    private Path traceDirectory = TRACE_DIRECTORY != null ? Paths.get(TRACE_DIRECTORY) : null;
+    private Path treeDirectory = TREE_DIRECTORY != null ? Paths.get(TREE_DIRECTORY) : null;
+
+    // Opponent profiles, null path if they are neither used nor updated
+    private Path opponentProfilesPath = OPPONENT_PROFILES_PATH != null ? Paths.get(OPPONENT_PROFILES_PATH) : null;
+    private String[] opponentNames = OPPONENT_NAMES != null ? OPPONENT_NAMES.split(",") : new String[0];
+
+    // Values of the states earlier searches visited, null if the cache is disabled
+    private final ValueCache valueCache;
+
     public DetectiveGoetzbach(Logger logger) {
+        this(logger, null);
+    }
+
+    /**
+     * @param parameters constants of the search, or null to load the profile (or use the defaults if there is none)
+     */
+    public DetectiveGoetzbach(Logger logger, SearchParameters parameters) {
         super(logger);
+        this.parameters = parameters != null ? parameters : loadParameters();
         MCTSAgent = new HeimlichAndCoMCTSAgent(logger);
+        MCTSAgent.setExplorationConstant(this.parameters.getExplorationConstant());
+        openingBook = loadOpeningBook();
+        valueCache = VALUE_CACHE_BYTES > 0 ? loadValueCache() : null;
+    }
+
+    /**
+     * Creates the value cache with the entries of the cache file, if there is one. A missing or broken file is not an
+     * error, the cache then starts empty.
+     */
+    private ValueCache loadValueCache() {
+        ValueCache cache = new ValueCache(VALUE_CACHE_BYTES);
+        if (VALUE_CACHE_PATH == null || !Files.isReadable(Paths.get(VALUE_CACHE_PATH))) {
+            return cache;
+        }
+        try {
+            cache.read(Paths.get(VALUE_CACHE_PATH));
+            log.inf("MctsAgent: Value cache loaded with " + cache.size() + " states\n");
+        } catch (IOException ex) {
+            log.err("MctsAgent: Could not read value cache " + VALUE_CACHE_PATH + ": " + ex.getMessage() + "\n");
+        }
+        return cache;
+    }
+
+    /**
+     * Reads the search parameter profile if it exists, otherwise the default parameters are used.
+     */
+    private SearchParameters loadParameters() {
+        Path path = Paths.get(PROFILE_PATH);
+        if (!Files.isReadable(path)) {
+            return SearchParameters.defaults();
+        }
+        try {
+            SearchParameters loaded = SearchParameters.load(path);
+            log.inf("MctsAgent: Search parameters loaded: " + loaded + "\n");
+            return loaded;
+        } catch (IOException | IllegalArgumentException ex) {
+            log.err("MctsAgent: Could not load search parameters " + path + ": " + ex.getMessage() + "\n");
+            return SearchParameters.defaults();
+        }
+    }
+
+    /**
+     * Memory-maps the opening book if it exists. A missing or broken book is not an error, the agent then searches
+     * the opening itself. The book is read-only, so it is mapped once and shared by all instances in the JVM.
+     */
+    private OpeningBook loadOpeningBook() {
+        synchronized (DetectiveGoetzbach.class) {
+            if (!sharedOpeningBookLoaded) {
+                sharedOpeningBook = openOpeningBook();
+                sharedOpeningBookLoaded = true;
+            }
+            return sharedOpeningBook;
+        }
+    }
+
+    private OpeningBook openOpeningBook() {
+        Path path = Paths.get(OPENING_BOOK_PATH);
+        if (!Files.isReadable(path)) {
+            return null;
+        }
+        try {
+            OpeningBook book = OpeningBook.open(path);
+            log.inf("MctsAgent: Opening book with " + book.size() + " positions loaded.\n");
+            return book;
+        } catch (IOException | IllegalArgumentException ex) {
+            log.err("MctsAgent: Could not load opening book " + path + ": " + ex.getMessage() + "\n");
+            return null;
+        }
     }
 
     @Override
     public HeimlichAndCoAction computeNextAction(HeimlichAndCo game, long l, TimeUnit timeUnit) {
+        super.setTimers(l, timeUnit);
 
         // Initialize trackers on the first turn
         if (diceTracker == null) {
-            int numPlayers = game.getNumberOfPlayers();
-            diceTracker = new DiceTracker(numPlayers);
-            cardTracker = new CardTracker(numPlayers);
-
-            //Initialization of trackedBoard
-            this.trackedBoard = new HeimlichAndCoBoard();
-
-            log.inf("MctsAgent: Trackers initialized for " + numPlayers + " players.\n");
+            initializeTrackers(game.getNumberOfPlayers());
+            applyOpponentProfiles(game.getNumberOfPlayers());
         }
 
         log.deb("MctsAgent: Computing next action\n");
-        super.setTimers(l, timeUnit);
+        lastRootPlayouts = -1;
+        lastRootValue = Double.NaN;
 
         Set<HeimlichAndCoAction> possibleActions = game.getPossibleActions();
         if (possibleActions.size() == 1) {
             return game.getPossibleActions().iterator().next();
         }
 
-        // 1. Initialize memory monitoring
-        Runtime runtime = Runtime.getRuntime();
-        long memoryThreshold = (long) (runtime.maxMemory() * 0.90);
+        // we have a real decision to make, so our background search has to make room for it
+        stopPondering();
+
+        // a seeded decision draws all its random numbers from one source, derived from the seed and the state
+        SplittableRandom source = seed != null ? new SplittableRandom(seed ^ StateHasher.hash(game)) : null;
+        byte[] tracedState = source != null && traceDirectory != null ? snapshotState(game) : null;
+        int recordCount = game.getActionRecords().size();
+
+        HeimlichAndCoAction action = decide(game, l, timeUnit, source);
+        if (tracedState != null) {
+            writeTrace(tracedState, game.getNumberOfPlayers(), recordCount, action);
+        }
+        return action;
+    }
 
+    /**
+     * Chooses the action in a position with more than one possible action. Everything but the search loop runs on the
+     * calling thread, so the trackers and the pondering are only ever used by it.
+     *
+     * @param source random numbers of a seeded decision, null if the decision does not have to be reproducible
+     */
+    private HeimlichAndCoAction decide(HeimlichAndCo game, long l, TimeUnit timeUnit, SplittableRandom source) {
+        Random random = source != null ? new Random(source.nextLong()) : super.random;
+        // the search determinizes the game, so the fallback takes the options before
+        HeimlichAndCoAction[] options = ActionCodec.sortByCode(game.getPossibleActions());
+        MCTSNode tree = null;
         try {
+            // the book is keyed by the state as we see it, i.e. before hidden information is added
+            long stateHash = openingBook != null ? StateHasher.hash(game) : 0L;
+
             log.deb("MctsAgent: Adding information to the game");
-            addInformationToGame(game);
+            addInformationToGame(game, random);
+
+            //if less then 10 rolls in the game, we play the book move or perform a random action with the MCTS Agent
+            if(diceTracker.getNumbRolls() < parameters.getOpeningRolls()){
+                HeimlichAndCoAction bookAction = lookupOpeningBook(stateHash, game);
+                if (bookAction != null) {
+                    log.deb("MctsAgent: Playing book move " + bookAction + "\n");
+                    return bookAction;
+                }
+                if (source == null) {
+                    log.deb("this is turn: " + diceTracker.getNumbRolls() + " and we are making a MCTS Agent move");
+                    return MCTSAgent.computeNextAction(game,l,timeUnit);
+                }
+                // the MCTS Agent cannot be seeded, a seeded decision uses our own search
+            }
 
-            //if less then 10 rolls in the game, we perform a random action with the MCTS Agent
-            if(diceTracker.getNumbRolls() < 10){
-                log.deb("this is turn: " + diceTracker.getNumbRolls() + " and we are making a MCTS Agent move");
-                return MCTSAgent.computeNextAction(game,l,timeUnit);
+            if (EndgameSolver.isEndgame(game)) {
+                EndgameSolver solver = new EndgameSolver(this.playerId, ENDGAME_TURNS, ENDGAME_NODE_BUDGET, source != null, parameters);
+                // the solver may use at most half of the time, so MCTS still has time left if it gives up; a seeded
+                // decision is only limited by the node budget
+                BooleanSupplier solverShouldStop = source != null ? () -> false : () -> this.nanosElapsed() > this.TIMEOUT / 2;
+                HeimlichAndCoAction endgameAction = solver.solve(game, solverShouldStop);
+                if (endgameAction != null) {
+                    log.inf("MctsAgent: Endgame solved with " + solver.getEvaluatedNodes() + " states\n");
+                    return endgameAction;
+                }
+                log.deb("MctsAgent: Endgame not proven within the budget of the solver, doing MCTS\n");
             }
 
             if (SIMULATE_ALL_DIE_OUTCOMES) {
                 game.setAllowCustomDieRolls(true);
             }
-            MCTSNode.setPlayerId(this.playerId);
-            MCTSNode tree = new MCTSNode(0, 0, game, null);
-            log.deb("MctsAgent: Doing MCTS");
-            // 2. The combined safety loop
-            while (!this.shouldStopComputation()) {
-
-                // Memory Safety Check: Stop if used memory exceeds 90%
-                if (runtime.totalMemory() - runtime.freeMemory() > memoryThreshold) {
-                    log.inf("MctsAgent: Memory threshold reached! Stopping search early.\n");
-                    break;
-                }
+            tree = source == null ? takePonderedTree(game) : null;
+            if (tree != null) {
+                log.inf("MctsAgent: Reusing pondered subtree with " + tree.getPlayouts() + " playouts\n");
+            } else {
+                tree = new MCTSNode(game, this.playerId, null, parameters, source != null ? new Random(source.nextLong()) : new Random());
+            }
+            // the cache depends on earlier decisions, so a seeded decision does not use it
+            boolean cached = source == null && valueCache != null;
+            if (cached) {
+                tree.setValueCache(valueCache);
+            }
+            // opponents in the playouts mostly move the agent we assigned to them, as far as their history suggests
+            RolloutPolicy rolloutPolicy = RolloutPolicy.fromTrackers(this.playerId, game.getNumberOfPlayers(), diceTracker, cardTracker);
+            if (source != null) {
+                rolloutPolicy = rolloutPolicy.inCanonicalOrder();
+            }
 
-                Pair<MCTSNode, HeimlichAndCoAction> selectionPair = mctsSelection(tree, SIMULATE_ALL_DIE_OUTCOMES);
-                MCTSNode newNode = mctsExpansion(selectionPair.getA(), selectionPair.getB());
-                double reward = mctsSimulation(newNode);
-                mctsBackpropagation(newNode, reward);
+            // seeded and iteration limited decisions are not limited by time, so they need no watchdog
+            AtomicBoolean deadlineReached = new AtomicBoolean();
+            if (source != null || iterationBudget > 0) {
+                search(tree, rolloutPolicy, this::shouldStopComputation, source);
+            } else if (!searchBeforeDeadline(tree, rolloutPolicy, l, timeUnit, deadlineReached)) {
+                return bestActionSoFar(tree, options, random);
+            }
+            if (tree.getPlayouts() == 0) {
+                log.inf("MctsAgent: No time was left for the search. Playing a random action.\n");
+                return randomAction(game, random);
             }
 
+            ImmutablePair<MCTSNode, HeimlichAndCoAction> bestChild = tree.getBestChild();
             log.inf("MctsAgent: Playouts done from root node: " + tree.getPlayouts() + "\n");
-            log.inf("MctsAgent: Wins/playouts from selected child node: " + tree.getBestChild().getA().getWins() + "/" + tree.getBestChild().getA().getPlayouts() + "\n");
-            log.inf("MctsAgent: Q(s,a) of chosen action: " + tree.calculateQsaOfChild(tree.getBestChild().getB()) + "\n");
-            return tree.getBestChild().getB();
+            log.inf("MctsAgent: Wins/playouts from selected child node: " + bestChild.getA().getWins() + "/" + bestChild.getA().getPlayouts() + "\n");
+            log.inf("MctsAgent: Q(s,a) of chosen action: " + tree.calculateQsaOfChild(bestChild.getB()) + "\n");
+            lastRootPlayouts = tree.getPlayouts();
+            lastRootValue = tree.calculateQsaOfChild(bestChild.getB());
+            if (treeDirectory != null) {
+                writeTreeSnapshot(tree, game.getActionRecords().size());
+            }
+            if (cached) {
+                log.deb("MctsAgent: Cached " + valueCache.record(tree, VALUE_CACHE_MIN_PLAYOUTS) + " states\n");
+            }
+
+            // keep searching the position after our move while the opponents think (not reproducible, so only when
+            // the decisions are not seeded)
+            if (source == null && !deadlineReached.get()) {
+                startPondering(bestChild.getA(), rolloutPolicy, game.getActionRecords().size() + bestChild.getA().getActionsOnEdge());
+            }
+            return bestChild.getB();
 
         } catch (Exception ex) {
             log.err(ex);
-            log.err("MctsAgent: An error occurred while calculating the best action. Playing a random action.\n");
+            log.err("MctsAgent: An error occurred while calculating the best action.\n");
+        }
+        //If no action was searched, we play a random action s.t. we do not automatically lose the game
+        return bestActionSoFar(tree, options, random);
+    }
+
+    /**
+     * Runs the search loop on the search pool while the calling thread watches the deadline: if the search has not
+     * stopped {@link #DEADLINE_MARGIN_MILLIS} before the timeout of the SGE, it is told to stop; if it has not stopped
+     * after {@link #DEADLINE_GRACE_MILLIS} (e.g. a worker is stuck in a long step), it is abandoned. An abandoned search
+     * stops at its next check and only ever touches its own tree, so the next decision does not wait for it but starts
+     * a search of its own.
+     *
+     * @param deadlineReached set once the search was told to stop at the deadline
+     * @return whether the search stopped in time; if not, only the best action it published may be read from the tree
+     */
+    private boolean searchBeforeDeadline(MCTSNode tree, RolloutPolicy rolloutPolicy, long l, TimeUnit timeUnit,
+                                         AtomicBoolean deadlineReached) {
+        // the timers are checked second, as the next decision sets them anew
+        BooleanSupplier shouldStop = () -> deadlineReached.get() || shouldStopComputation();
+        Future<?> search = SEARCH_POOL.submit(() -> search(tree, rolloutPolicy, shouldStop, null));
+        long deadlineNanos = timeUnit.toNanos(l) - TimeUnit.MILLISECONDS.toNanos(DEADLINE_MARGIN_MILLIS);
+        try {
+            try {
+                search.get(Math.max(0, deadlineNanos - this.nanosElapsed()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException ex) {
+                deadlineReached.set(true);
+                search.get(DEADLINE_GRACE_MILLIS, TimeUnit.MILLISECONDS);
+            }
+            return true;
+        } catch (TimeoutException ex) {
+            log.err("MctsAgent: The search did not stop before the deadline.\n");
+        } catch (ExecutionException ex) {
+            log.err(ex.getCause());
+            log.err("MctsAgent: The search failed.\n");
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            log.err("MctsAgent: Interrupted while waiting for the search.\n");
+        }
+        deadlineReached.set(true);
+        return false;
+    }
+
+    private void search(MCTSNode tree, RolloutPolicy rolloutPolicy, BooleanSupplier shouldStop, SplittableRandom source) {
+        log.deb("MctsAgent: Doing MCTS");
+        if (SEQUENTIAL_HALVING) {
+            runSequentialHalving(tree, rolloutPolicy, iterationBudget, shouldStop, source);
+        } else {
+            runSearch(tree, rolloutPolicy, iterationBudget > 0 ? () -> false : shouldStop, iterationBudget, source);
+        }
+    }
+
+    /**
+     * @param tree    of the decision, null if the search did not start
+     * @param options possible actions of the decision
+     * @return the root action with the best Q(s,a) the search published, a random option if it has not published one
+     */
+    private HeimlichAndCoAction bestActionSoFar(MCTSNode tree, HeimlichAndCoAction[] options, Random random) {
+        HeimlichAndCoAction best = tree != null ? tree.getBestActionSoFar() : null;
+        if (best != null && Arrays.asList(options).contains(best)) {
+            log.err("MctsAgent: Playing the best action so far.\n");
+            return best;
+        }
+        log.err("MctsAgent: No action was searched yet. Playing a random action.\n");
+        return options[random.nextInt(options.length)];
+    }
+
+    private static HeimlichAndCoAction randomAction(HeimlichAndCo game, Random random) {
+        HeimlichAndCoAction[] actions = ActionCodec.sortByCode(game.getPossibleActions());
+        return actions[random.nextInt(actions.length)];
+    }
+
+    /**
+     * Runs MCTS iterations on the given tree until the computation should stop, the iteration budget is used up or the
+     * memory is running out.
+     *
+     * @param tree          root of the search
+     * @param rolloutPolicy chooses the actions in the playouts
+     * @param shouldStop    checked before every iteration and during the simulation
+     * @param maxIterations number of iterations (selection, expansion and a batch of playouts), 0 for no limit; the
+     *                      best root action is published every {@link #PUBLISH_INTERVAL} iterations and at the end
+     * @param source        random numbers of a seeded search, null to use the random numbers of the threads
+     */
+    private void runSearch(MCTSNode tree, RolloutPolicy rolloutPolicy, BooleanSupplier shouldStop, int maxIterations,
+                           SplittableRandom source) {
+        // Initialize memory monitoring
+        Runtime runtime = Runtime.getRuntime();
+        long memoryThreshold = (long) (runtime.maxMemory() * 0.90);
+
+        // The combined safety loop, a proven root needs no further search
+        for (int iteration = 0; (maxIterations <= 0 || iteration < maxIterations) && !shouldStop.getAsBoolean()
+                && !tree.isSolved(); iteration++) {
+
+            // Memory Safety Check: Stop if used memory exceeds 90%
+            if (runtime.totalMemory() - runtime.freeMemory() > memoryThreshold) {
+                log.inf("MctsAgent: Memory threshold reached! Stopping search early.\n");
+                break;
+            }
+
+            Pair<MCTSNode, HeimlichAndCoAction> selectionPair = mctsSelection(tree, SIMULATE_ALL_DIE_OUTCOMES);
+            MCTSNode newNode = mctsExpansion(selectionPair.getA(), selectionPair.getB());
+            if (newNode.isSolved()) {
+                // the outcome is proven, a playout would only add noise to it
+                mctsBackpropagation(newNode, newNode.getSolvedRewards(), 1);
+            } else if (LEAF_BATCH_SIZE > 1) {
+                // a seeded search draws the seeds of the playouts and sums their rewards in a fixed order, so the
+                // result does not depend on the scheduling of the threads
+                long[] seeds = source != null ? source.longs(LEAF_BATCH_SIZE).toArray() : null;
+                double[][] rewards = new double[LEAF_BATCH_SIZE][];
+                SEARCH_POOL.submit(() -> IntStream.range(0, LEAF_BATCH_SIZE).parallel()
+                        .forEach(i -> rewards[i] = mctsSimulation(newNode, rolloutPolicy, shouldStop,
+                                seeds != null ? new Random(seeds[i]) : ThreadLocalRandom.current()))).join();
+                double[] rewardSums = new double[rewards[0].length];
+                for (double[] reward : rewards) {
+                    for (int player = 0; player < rewardSums.length; player++) {
+                        rewardSums[player] += reward[player];
+                    }
+                }
+                mctsBackpropagation(newNode, rewardSums, LEAF_BATCH_SIZE);
+            } else {
+                double[] rewards = mctsSimulation(newNode, rolloutPolicy, shouldStop, source != null ? new Random(source.nextLong()) : super.random);
+                mctsBackpropagation(newNode, rewards, 1);
+            }
+            if (iteration % PUBLISH_INTERVAL == PUBLISH_INTERVAL - 1) {
+                tree.publishBestActionSoFar();
+            }
+        }
+        tree.publishBestActionSoFar();
+    }
+
+    /**
+     * Searches the tree with a sequential halving at the root: the budget (the iteration budget or the time left) is
+     * split evenly into ceil(log2(candidates)) rounds, every round visits the root candidates still in the race equally
+     * often and then drops the worse half of them, until one is left (see {@link MCTSNode#startSequentialHalving}).
+     * Below the root, UCT selects as usual. If the time runs out early, the best candidate still in the race wins.
+     *
+     * @param maxIterations number of iterations over all rounds, 0 to use the time left
+     * @param shouldStop    ends the search early when the time is used up
+     */
+    private void runSequentialHalving(MCTSNode tree, RolloutPolicy rolloutPolicy, int maxIterations,
+                                      BooleanSupplier shouldStop, SplittableRandom source) {
+        int survivors = tree.startSequentialHalving(SIMULATE_ALL_DIE_OUTCOMES);
+        if (survivors <= 1) {
+            runSearch(tree, rolloutPolicy, maxIterations > 0 ? () -> false : shouldStop, maxIterations, source);
+            return;
+        }
+        int rounds = 32 - Integer.numberOfLeadingZeros(survivors - 1);
+        int iterationsLeft = maxIterations;
+        for (int round = 0; survivors > 1 && !tree.isSolved(); round++) {
+            int roundsLeft = rounds - round;
+            if (maxIterations > 0) {
+                // at least one iteration per round, so every round can end
+                int roundIterations = Math.max(1, iterationsLeft / roundsLeft);
+                runSearch(tree, rolloutPolicy, () -> false, roundIterations, source);
+                iterationsLeft -= roundIterations;
+            } else {
+                if (shouldStop.getAsBoolean()) {
+                    break;
+                }
+                long roundEnd = System.nanoTime() + nanosLeft() / roundsLeft;
+                runSearch(tree, rolloutPolicy, () -> System.nanoTime() >= roundEnd || shouldStop.getAsBoolean(), 0, source);
+            }
+            survivors = tree.halveSurvivors();
+            tree.publishBestActionSoFar();
+        }
+    }
+
+    /**
+     * Starts searching the subtree after our own move in the background. The subtree becomes the root of the pondering
+     * search, so its statistics can be handed to the next search if the game follows one of its lines.
+     *
+     * @param subtree       node reached by our chosen action
+     * @param rolloutPolicy policy of the search that chose the action
+     * @param recordIndex   number of action records in the game once our chosen action is applied
+     */
+    private void startPondering(MCTSNode subtree, RolloutPolicy rolloutPolicy, int recordIndex) {
+        if (!PONDER || subtree.getGame().isGameOver()) {
+            return;
+        }
+        subtree.makeRoot();
+        ponderTree = subtree;
+        ponderPolicy = rolloutPolicy;
+        ponderRecordIndex = recordIndex;
+        AtomicBoolean stop = new AtomicBoolean();
+        ponderStop = stop;
+        ponderSearch = SEARCH_POOL.submit(() -> {
+            try {
+                runSearch(subtree, rolloutPolicy, stop::get, 0, null);
+            } catch (Exception ex) {
+                log.err(ex);
+                log.err("MctsAgent: Pondering failed.\n");
+            }
+        });
+    }
+
+    /**
+     * Stops the background search and waits (briefly) until it has finished its current iteration.
+     * The pondered tree is kept for {@link #takePonderedTree(HeimlichAndCo)}, unless the background search is still
+     * running: then the tree is dropped, so it is never used by two threads at once.
+     */
+    private void stopPondering() {
+        if (ponderSearch == null) {
+            return;
+        }
+        ponderStop.set(true);
+        try {
+            ponderSearch.get(PONDER_JOIN_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | TimeoutException ex) {
+            // a failed search was reported by itself, one that is still running is checked below
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        if (!ponderSearch.isDone()) {
+            ponderTree = null;
+        }
+        ponderSearch = null;
+        ponderStop = null;
+    }
+
+    /**
+     * Follows the actions that were played since our last decision down the pondered tree.
+     *
+     * @param game the current game (already determinized)
+     * @return the node matching the current state as new root, or null if the game left the pondered tree
+     */
+    private MCTSNode takePonderedTree(HeimlichAndCo game) {
+        MCTSNode node = ponderTree;
+        ponderTree = null;
+        if (node == null) {
+            return null;
+        }
+        List<ActionRecord<HeimlichAndCoAction>> records = game.getActionRecords();
+        for (int i = ponderRecordIndex; i < records.size() && node != null; i++) {
+            HeimlichAndCoAction action = records.get(i).getAction();
+            if (action instanceof HeimlichAndCoDieRollAction) {
+                // the tree contains the rolled faces, the records contain random rolls
+                action = new HeimlichAndCoDieRollAction(ActionCodec.getRolledValue((HeimlichAndCoDieRollAction) action));
+            }
+            node = node.getChild(action);
+            if (node != null) {
+                // forced actions collapsed into the edge are in the records as well
+                i += node.getActionsOnEdge() - 1;
+            }
+        }
+        // the pondered line was based on an older determinization, only reuse it if we have the same options
+        if (node == null || !node.getGame().getPossibleActions().equals(game.getPossibleActions())) {
+            return null;
+        }
+        node.makeRoot();
+        return node;
+    }
+
+    /**
+     * @return number of playouts of the root of the last search, or -1 if the last action was not chosen by MCTS
+     */
+    public int getLastRootPlayouts() {
+        return lastRootPlayouts;
+    }
+
+    /**
+     * @return Q(s,a) of the last chosen action, or NaN if the last action was not chosen by MCTS
+     */
+    public double getLastRootValue() {
+        return lastRootValue;
+    }
+
+    /**
+     * Makes the decisions reproducible: all random numbers of a decision are drawn from a source seeded with the seed
+     * and the hash of the state, the actions are considered in a fixed order, and the search runs a fixed number of
+     * iterations instead of until the time is up. Pondering and the opening moves of the MCTS Agent (which cannot be
+     * seeded) are turned off, and the endgame solver is only limited by its node budget.
+     * <p>
+     * The search still stops early when the memory runs out, and the leaf batches depend on "detective.leafBatchSize"
+     * (1 by default), so a decision is only reproduced with the same batch size.
+     *
+     * @param seed       seed of the decisions
+     * @param iterations search iterations per decision, must be positive
+     */
+    public void setDeterministic(long seed, int iterations) {
+        if (iterations <= 0) {
+            throw new IllegalArgumentException("A deterministic search needs a positive number of iterations: " + iterations);
+        }
+        this.seed = seed;
+        this.iterationBudget = iterations;
+    }
+
+    /**
+     * Names the agents of the next games, so their profiles can be used and updated (see {@link OpponentProfiles}).
+     *
+     * @param names name per seat (our own is ignored), seats without a name or with null use the profile of unknown
+     *              opponents
+     */
+    public void setOpponentNames(String... names) {
+        this.opponentNames = names.clone();
+    }
+
+    /**
+     * @param path file of the opponent profiles, or null to neither use nor update profiles
+     */
+    public void setOpponentProfiles(Path path) {
+        this.opponentProfilesPath = path;
+    }
+
+    /**
+     * @param traceDirectory directory to write a {@link DecisionTrace} of every seeded decision to, or null to write none
+     */
+    public void setTraceDirectory(Path traceDirectory) {
+        this.traceDirectory = traceDirectory;
+    }
+
+    /**
+     * @param treeDirectory directory to write a {@link TreeSnapshot} of the search tree of every decision by MCTS to, or
+     *                      null to write none
+     */
+    public void setTreeDirectory(Path treeDirectory) {
+        this.treeDirectory = treeDirectory;
+    }
+
+    /**
+     * Repeats a traced decision: restores the game and the trackers from the trace and decides again with the seed and
+     * the iterations of the trace. The agent is set up for the player of the trace, it should not be used for a game
+     * afterwards.
+     *
+     * @param trace decision to repeat
+     * @return the action the agent chooses now, equal to the traced one unless the search changed
+     * @throws IOException if the state in the trace cannot be read
+     */
+    public HeimlichAndCoAction replay(DecisionTrace trace) throws IOException {
+        if (trace.getIterations() <= 0) {
+            throw new IllegalArgumentException("The traced search was limited by time, it cannot be replayed");
+        }
+        if (trace.getLeafBatchSize() != LEAF_BATCH_SIZE) {
+            throw new IllegalArgumentException("The traced search used a leaf batch size of " + trace.getLeafBatchSize()
+                    + ", this one uses " + LEAF_BATCH_SIZE + " (set detective.leafBatchSize)");
+        }
+        setUp(trace.getNumberOfPlayers(), trace.getPlayerId());
+        setDeterministic(trace.getSeed(), trace.getIterations());
+        traceDirectory = null;
+        // the priors are restored from the trace, and a replay is not a game to learn from
+        opponentProfilesPath = null;
+
+        StateSnapshot state;
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(trace.getState()))) {
+            state = StateSnapshot.read(in);
+        }
+        // the trackers catch up on all action records of the game when the decision syncs them
+        initializeTrackers(trace.getNumberOfPlayers());
+        OpponentProfiles.Profile[] priors = state.getPriors();
+        for (int i = 0; i < priors.length; i++) {
+            applyPrior(i, priors[i]);
+        }
+        return computeNextAction(state.getGame(), 1, TimeUnit.DAYS);
+    }
+
+    /**
+     * @return the game and the priors of the trackers before a decision, see {@link #replay(DecisionTrace)}
+     */
+    private byte[] snapshotState(HeimlichAndCo game) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            new StateSnapshot(game, priorProfiles).write(out);
+        } catch (IOException | IllegalArgumentException ex) {
+            log.err("MctsAgent: Could not snapshot the state for the decision trace: " + ex.getMessage() + "\n");
+            return null;
+        }
+        return bytes.toByteArray();
+    }
+
+    private void writeTrace(byte[] state, int numberOfPlayers, int recordCount, HeimlichAndCoAction action) {
+        DecisionTrace trace = new DecisionTrace(seed, iterationBudget, LEAF_BATCH_SIZE, parameters, this.playerId,
+                numberOfPlayers, state, ActionCodec.encode(action), lastRootPlayouts, lastRootValue);
+        Path path = traceDirectory.resolve(String.format("decision-%d-%d-%016x.trace", this.playerId, recordCount, seed));
+        try {
+            Files.createDirectories(traceDirectory);
+            trace.write(path);
+        } catch (IOException ex) {
+            log.err("MctsAgent: Could not write decision trace " + path + ": " + ex.getMessage() + "\n");
+        }
+    }
+
+    private void writeTreeSnapshot(MCTSNode tree, int recordCount) {
+        TreeSnapshot snapshot = TreeSnapshot.capture(tree, this.playerId, TREE_SNAPSHOT_TOP_K, TREE_SNAPSHOT_NODE_BUDGET);
+        Path path = treeDirectory.resolve(String.format("tree-%d-%d-%016x.tree", this.playerId, recordCount, snapshot.getDeterminization()));
+        try {
+            Files.createDirectories(treeDirectory);
+            snapshot.write(path);
+        } catch (IOException ex) {
+            log.err("MctsAgent: Could not write tree snapshot " + path + ": " + ex.getMessage() + "\n");
+        }
+    }
+
+    @Override
+    public void setUp(int numberOfPlayers, int playerId) {
+        super.setUp(numberOfPlayers, playerId);
+        if (WARM_UP_MILLIS > 0 && WARMED_UP.compareAndSet(false, true)) {
+            try {
+                warmUp(numberOfPlayers);
+            } catch (Exception ex) {
+                log.err(ex);
+                log.err("MctsAgent: Warm-up failed.\n");
+            }
+        }
+    }
+
+    /**
+     * Runs a bounded search on a synthetic game, so selection, expansion, the playouts and the copying of games are
+     * compiled and the precomputed tables (Zobrist keys, codec, playout pool) are built before the first move.
+     * The game is determinized like in a decision, with trackers that catch up on its action records and are thrown
+     * away afterwards, so the first decision starts with new trackers.
+     */
+    private void warmUp(int numberOfPlayers) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(WARM_UP_MILLIS);
+        HeimlichAndCo game = new HeimlichAndCo("cards", numberOfPlayers);
+        for (int i = 0; i < WARM_UP_PLIES && !game.isGameOver(); i++) {
+            HeimlichAndCoAction[] actions = game.getPossibleActions().toArray(new HeimlichAndCoAction[0]);
+            game = game.doAction(actions[super.random.nextInt(actions.length)]);
+        }
+        if (game.isGameOver()) {
+            return;
+        }
+        HeimlichAndCo view = (HeimlichAndCo) game.getGame(this.playerId);
+        StateHasher.hash(view);
+        initializeTrackers(numberOfPlayers);
+        try {
+            addInformationToGame(view, super.random);
+            if (SIMULATE_ALL_DIE_OUTCOMES) {
+                view.setAllowCustomDieRolls(true);
+            }
+            MCTSNode tree = new MCTSNode(view, this.playerId, null, parameters);
+            RolloutPolicy rolloutPolicy = RolloutPolicy.fromTrackers(this.playerId, numberOfPlayers, diceTracker, cardTracker);
+            runSearch(tree, rolloutPolicy, () -> System.nanoTime() > deadline, 0, null);
+            log.inf("MctsAgent: Warm-up done with " + tree.getPlayouts() + " playouts\n");
+        } finally {
+            diceTracker = null;
+            cardTracker = null;
+            identityTracker = null;
+        }
+    }
+
+    @Override
+    public void ponderStart() {
+        if (ponderTree != null && ponderSearch == null) {
+            startPondering(ponderTree, ponderPolicy, ponderRecordIndex);
+        }
+    }
+
+    @Override
+    public void ponderStop() {
+        stopPondering();
+    }
+
+    @Override
+    public void tearDown() {
+        stopPondering();
+        ponderTree = null;
+        if (diceTracker != null) {
+            recordOpponentProfiles();
+            // the next game starts with new trackers
+            diceTracker = null;
+        }
+        if (valueCache != null && VALUE_CACHE_PATH != null) {
+            try {
+                valueCache.write(Paths.get(VALUE_CACHE_PATH));
+            } catch (IOException ex) {
+                log.err("MctsAgent: Could not write value cache " + VALUE_CACHE_PATH + ": " + ex.getMessage() + "\n");
+            }
+        }
+    }
+
+    /**
+     * Loads the profiles of the named opponents as priors of the trackers, done on the first turn after the trackers are
+     * created. Missing profiles and opponents without a name leave the trackers without priors.
+     */
+    private void applyOpponentProfiles(int numPlayers) {
+        if (opponentProfilesPath == null || IntStream.range(0, numPlayers).noneMatch(this::isNamedOpponent)) {
+            return;
+        }
+        OpponentProfiles profiles;
+        try {
+            profiles = OpponentProfiles.read(opponentProfilesPath);
+        } catch (IOException ex) {
+            log.err("MctsAgent: Could not read opponent profiles " + opponentProfilesPath + ": " + ex.getMessage() + "\n");
+            return;
+        }
+        for (int i = 0; i < numPlayers; i++) {
+            OpponentProfiles.Profile profile = isNamedOpponent(i) ? profiles.get(opponentName(i)) : null;
+            if (applyPrior(i, profile)) {
+                log.inf("MctsAgent: Profile of player " + i + " (" + opponentName(i) + "): " + profile + "\n");
+            }
+        }
+    }
+
+    /**
+     * Gives the trackers the profile of a player as prior.
+     *
+     * @param profile of the player, null or a profile without observed turns gives no prior
+     * @return whether the profile was applied
+     */
+    private boolean applyPrior(int player, OpponentProfiles.Profile profile) {
+        if (profile == null || Double.isNaN(profile.getConcentration())) {
+            return false;
+        }
+        diceTracker.setConcentrationPrior(player, profile.getConcentration());
+        identityTracker.setPrior(player, profile.getConcentration(), profile.getBurstRate());
+        if (!Double.isNaN(profile.getCardPlayRate())) {
+            cardTracker.setPlayRatePrior(player, profile.getCardPlayRate());
+        }
+        priorProfiles[player] = profile;
+        return true;
+    }
+
+    /**
+     * Adds what the trackers observed about the opponents in this game to their profiles.
+     */
+    private void recordOpponentProfiles() {
+        if (opponentProfilesPath == null || diceTracker.getNumbRolls() == 0) {
+            return;
+        }
+        Map<String, OpponentProfiles.Profile> observations = new HashMap<>();
+        for (int i = 0; i < diceTracker.getNumberOfPlayers(); i++) {
+            if (i == this.playerId) {
+                continue;
+            }
+            observations.merge(opponentName(i), OpponentProfiles.Profile.ofGame(diceTracker.getTurnCount(i),
+                    diceTracker.getObservedMovementConcentration(i), diceTracker.getBurstTurns(i),
+                    cardTracker.getCardDecisions(i), cardTracker.getCardsPlayed(i)), OpponentProfiles.Profile::plus);
+        }
+        try {
+            OpponentProfiles.record(opponentProfilesPath, observations);
+        } catch (IOException ex) {
+            log.err("MctsAgent: Could not update opponent profiles " + opponentProfilesPath + ": " + ex.getMessage() + "\n");
         }
-        //If an exception is encountered, we play a random action s.t. we do not automatically lose the game
-        HeimlichAndCoAction[] actions = game.getPossibleActions().toArray(new HeimlichAndCoAction[0]);
-        return actions[super.random.nextInt(actions.length)];
+    }
+
+    private boolean isNamedOpponent(int player) {
+        return player != this.playerId && !OpponentProfiles.UNKNOWN.equals(opponentName(player));
+    }
+
+    private String opponentName(int player) {
+        String name = player < opponentNames.length ? opponentNames[player] : null;
+        return name == null || name.trim().isEmpty() ? OpponentProfiles.UNKNOWN : name.trim();
+    }
+
+    @Override
+    public void destroy() {
+        tearDown();
+    }
+
+    /**
+     * Looks up the current state in the opening book.
+     *
+     * @return the book action or null if the state is not in the book (or the book move is not valid here)
+     */
+    private HeimlichAndCoAction lookupOpeningBook(long stateHash, HeimlichAndCo game) {
+        if (openingBook == null) {
+            return null;
+        }
+        int code = openingBook.lookup(stateHash);
+        if (code == OpeningBook.NOT_FOUND) {
+            return null;
+        }
+        return ActionCodec.decode(code, game);
     }
 
     /**
@@ -162,7 +1076,7 @@ public class DetectiveGoetzbach extends AbstractGameAgent<HeimlichAndCo, Heimlic
     /**
      * Determinizes the game state by assigning identities and cards based on suspicion.
      */
-    private void addInformationToGame(HeimlichAndCo game) {
+    private void addInformationToGame(HeimlichAndCo game, Random random) {
         // Synchronize trackers with latest game events
         syncTrackers(game);
 
@@ -207,34 +1121,39 @@ public class DetectiveGoetzbach extends AbstractGameAgent<HeimlichAndCo, Heimlic
             }
         }
 
-        // Rational Card Assignment using the hidden pool
+        // Card Assignment from the hidden pool, weighted by what the opponents are likely to hold
         if (game.isWithCards()) {
             List<HeimlichAndCoCard> hiddenPool = cardTracker.getHiddenPool(game.getCards().get(this.playerId));
-            Collections.shuffle(hiddenPool);
+            Collections.shuffle(hiddenPool, random);
 
+            // Deal in a random order, so no opponent always gets the first pick of the cards it is likely to hold
+            List<Integer> dealingOrder = new ArrayList<>();
             for (int i = 0; i < game.getNumberOfPlayers(); i++) {
-                if (i == this.playerId) continue;
-
-                int handSize = cardTracker.getPlayerCardCount(i);
-                List<HeimlichAndCoCard> guessedHand = new LinkedList<>();
-                for (int k = 0; k < handSize && !hiddenPool.isEmpty(); k++) {
-                    guessedHand.add(hiddenPool.remove(0));
-                }
-                game.getCards().put(i, guessedHand);
+                if (i != this.playerId) dealingOrder.add(i);
+            }
+            Collections.shuffle(dealingOrder, random);
+            for (int i : dealingOrder) {
+                game.getCards().put(i, cardTracker.dealHand(i, hiddenPool, random));
             }
+
+            // The view of the game contains a made-up stack (it may contain cards we have seen), so the stack is
+            // rebuilt from the unseen cards that are left after dealing the hands; it is reshuffled for every expansion
+            // and every playout
+            int stackSize = Math.min(game.getCardStack().count(), hiddenPool.size());
+            game.setCardStack(new CardStack<>(hiddenPool.subList(0, stackSize)));
         }
     }
 
 
 
-    private void mctsBackpropagation(MCTSNode node, double reward) {
+    private void mctsBackpropagation(MCTSNode node, double[] rewardSums, int count) {
         log.deb("MctsAgent: In Backpropagation\n");
-        node.backpropagation(reward);
+        node.backpropagation(rewardSums, count);
     }
 
     private MCTSNode mctsExpansion(MCTSNode node, HeimlichAndCoAction action) {
         log.deb("MctsAgent: In Expansion\n");
-        return node.expansion(action);
+        return node.expandSelected(action, COMPACT_TREE);
     }
 
     private Pair<MCTSNode, HeimlichAndCoAction> mctsSelection(MCTSNode node, boolean simulateAllDieOutcomes) {
@@ -246,40 +1165,87 @@ public class DetectiveGoetzbach extends AbstractGameAgent<HeimlichAndCo, Heimlic
      * Does the simulation step of MCTS. This function is implemented here and not in the MctsNode as that makes it
      * easier to handle how much time there is (left) for computation before timing out.
      *
-     * @param node from where simulation should take place
-     * @return 1 or 0, depending on whether the agent belonging to the player of this agent wins
+     * May be called from several threads at once, the node is only read.
+     *
+     * @param node          from where simulation should take place
+     * @param rolloutPolicy chooses the actions of the playout
+     * @param shouldStop    stops the simulation early when it returns true
+     * @param random        source of the random actions, must not be shared between threads
+     * @return the reward of every player, see {@link #evaluatePlayout(HeimlichAndCo)}
      */
-    private double mctsSimulation(MCTSNode node) {
+    double[] mctsSimulation(MCTSNode node, RolloutPolicy rolloutPolicy, BooleanSupplier shouldStop, Random random) {
         log.deb("MctsAgent: In Simulation\n");
         HeimlichAndCo game = new HeimlichAndCo(node.getGame());
+        if (game.isWithCards()) {
+            // the order of the hidden stack is unknown, every playout draws in a different order
+            Collections.shuffle(game.getCardStack().getCards(), random);
+        }
         //use a termination depth were the game is evaluated and stopped
         int simulationDepth = 0;
-        while (!game.isGameOver() && !this.shouldStopComputation()) {
-            if (TERMINATION_DEPTH >= 0 && simulationDepth >= TERMINATION_DEPTH) {
+        while (!game.isGameOver() && !shouldStop.getAsBoolean()) {
+            if (parameters.getTerminationDepth() >= 0 && simulationDepth >= parameters.getTerminationDepth()) {
                 break;
             }
             Set<HeimlichAndCoAction> possibleActions = game.getPossibleActions();
-            HeimlichAndCoAction selectedAction = possibleActions.toArray(new HeimlichAndCoAction[1])[super.random.nextInt(possibleActions.size())];
+            if (game.isAllowCustomDieRolls() && game.getCurrentPhase() == HeimlichAndCoPhase.DIE_ROLL_PHASE) {
+                // roll with our random numbers instead of the engine's die, all faces are equally likely either way
+                possibleActions.remove(HeimlichAndCoDieRollAction.getRandomRollAction());
+            }
+            HeimlichAndCoAction selectedAction = rolloutPolicy.selectAction(game, possibleActions, random);
             game.applyAction(selectedAction);
             simulationDepth++;
         }
 
+        return evaluatePlayout(game);
+    }
+
+    /**
+     * Rewards every player by the agent assigned to it in the (determinized) game. In a finished game, the players whose
+     * agents have the highest score of the players' agents get the win utility if there is one of them and the draw
+     * utility if they share it, the others the loss utility (see {@link SearchParameters}). A playout stopped at the
+     * termination depth is not decided yet, the players get a share of the way from loss to win that grows with the
+     * score of their agent.
+     *
+     * @return reward per player, in [0, 1]
+     */
+    private double[] evaluatePlayout(HeimlichAndCo game) {
         Map<Agent, Integer> scores = game.getBoard().getScores();
-        int myScore = scores.get(game.getPlayersToAgentsMap().get(this.playerId));
+        Map<Integer, Agent> playersToAgents = game.getPlayersToAgentsMap();
+        double[] rewards = new double[game.getNumberOfPlayers()];
+        double win = parameters.getWinUtility();
+        double loss = parameters.getLossUtility();
+        if (!game.isGameOver()) {
+            for (int player = 0; player < rewards.length; player++) {
+                // 42 is the winning score in Heimlich & Co., scores can also drop below 0 (ruins)
+                double progress = Math.max(0.0, Math.min(1.0, scores.get(playersToAgents.get(player)) / 42.0));
+                rewards[player] = loss + (win - loss) * progress;
+            }
+            return rewards;
+        }
+        return MCTSNode.outcome(game, parameters);
+    }
 
-        // Option A: Simple Normalization (0.0 to 1.0)
-        // 42 is the winning score in Heimlich & Co.
-        double reward = (double) myScore / 42.0;
 
-        // Ensure reward doesn't exceed 1.0 if someone goes slightly over 42
-        return Math.min(1.0, reward);
-    }
+    /**
+     * Creates the trackers, done on the first turn once the number of players is known.
+     */
+    void initializeTrackers(int numPlayers) {
+        diceTracker = new DiceTracker(numPlayers);
+        cardTracker = new CardTracker(numPlayers);
+        identityTracker = new IdentityTracker(numPlayers, diceTracker);
+        priorProfiles = new OpponentProfiles.Profile[numPlayers];
+
+        //Initialization of trackedBoard
+        this.trackedBoard = new HeimlichAndCoBoard();
+        this.lastProcessedActionIndex = 0;
 
+        log.inf("MctsAgent: Trackers initialized for " + numPlayers + " players.\n");
+    }
 
     /**
      * Synchronizes internal trackers by analyzing the ActionRecord history.
      */
-    private void syncTrackers(HeimlichAndCo game) {
+    void syncTrackers(HeimlichAndCo game) {
         List<ActionRecord<HeimlichAndCoAction>> records = game.getActionRecords();
 
         for (int i = lastProcessedActionIndex; i < records.size(); i++) {
@@ -291,28 +1257,17 @@ public class DetectiveGoetzbach extends AbstractGameAgent<HeimlichAndCo, Heimlic
             if (action instanceof HeimlichAndCoAgentMoveAction) {
                 HeimlichAndCoAgentMoveAction move = (HeimlichAndCoAgentMoveAction) action;
 
-                // Capture positions BEFORE applying the action
-                Map<Agent, Integer> posBefore = new HashMap<>(trackedBoard.getAgentsPositions());
-
                 // Rule 6: Track card gains (ruins or "No Move" on 1-3 roll)
                 if (move.movesAgentsIntoRuins(trackedBoard) || move.isNoMoveAction()) {
                     cardTracker.recordCardGained(playerID);
                 }
 
-                // Apply the move to see the new positions
-                action.applyAction(trackedBoard);
-                Map<Agent, Integer> posAfter = trackedBoard.getAgentsPositions();
-
-                // Compare positions to find the exact moves made
-                Map<Agent, Integer> deducedMoves = new HashMap<>();
-                int numFields = trackedBoard.getNumberOfFields();
-                for (Agent agent : posBefore.keySet()) {
-                    int dist = (posAfter.get(agent) - posBefore.get(agent) + numFields) % numFields;
-                    if (dist > 0) deducedMoves.put(agent, dist);
-                }
+                // The steps per agent are read straight from the action
+                ActionCodec.getSteps(ActionCodec.encode(move), turnSteps);
+                diceTracker.recordTurnMovement(playerID, turnSteps);
 
-                // Update DiceTracker with the deduced movement
-                diceTracker.recordTurnMovement(playerID, deducedMoves);
+                // Keep the trackedBoard in sync for the ruins check of the next moves
+                action.applyAction(trackedBoard);
 
             }
             // 2. Identifying played cards
@@ -320,9 +1275,10 @@ public class DetectiveGoetzbach extends AbstractGameAgent<HeimlichAndCo, Heimlic
                 HeimlichAndCoCardAction cardAction = (HeimlichAndCoCardAction) action;
 
                 if (!cardAction.isSkipCardAction()) {
-                    // Identification via a temporary list
-                    List<HeimlichAndCoCard> identificationList = new LinkedList<>(cardTracker.getTotalCardsInGame());
-                    List<HeimlichAndCoCard> beforeRemoval = new LinkedList<>(identificationList);
+                    // Identification via the reused list
+                    List<HeimlichAndCoCard> beforeRemoval = cardTracker.getTotalCardsInGame();
+                    identificationList.clear();
+                    identificationList.addAll(beforeRemoval);
 
                     // The engine's method will remove the specific card played from our list
                     cardAction.removePlayedCardFromList(identificationList);
@@ -331,6 +1287,8 @@ public class DetectiveGoetzbach extends AbstractGameAgent<HeimlichAndCo, Heimlic
                         HeimlichAndCoCard playedCard = findMissingCard(beforeRemoval, identificationList);
                         cardTracker.recordCardPlayed(playerID, playedCard);
                     }
+                } else {
+                    cardTracker.recordCardSkipped(playerID, trackedBoard, identityTracker);
                 }
                 action.applyAction(trackedBoard);
             } else {
@@ -342,12 +1300,17 @@ public class DetectiveGoetzbach extends AbstractGameAgent<HeimlichAndCo, Heimlic
     }
 
 
+    /**
+     * @return the card that was removed from the original list, the reduced list keeps the order of the others
+     */
     private HeimlichAndCoCard findMissingCard(List<HeimlichAndCoCard> original, List<HeimlichAndCoCard> reduced) {
-        List<HeimlichAndCoCard> temp = new LinkedList<>(original);
-        for (HeimlichAndCoCard c : reduced) {
-            temp.remove(c);
+        // The cards behind the removed one moved up by one, the first position that differs is the removed card
+        for (int i = 0; i < reduced.size(); i++) {
+            if (original.get(i) != reduced.get(i)) {
+                return original.get(i);
+            }
         }
-        return temp.get(0);
+        return original.get(reduced.size());
     }
 
 
@@ -10,6 +10,10 @@ import java.util.Map;
 public class DiceTracker {
   private static final int NUM_AGENTS = 7; // Always 7 figurines in the game
   private static final int MAX_TURNS = 100;
+  // Number of turns after which a concentration measurement counts half
+  private static final int CONCENTRATION_PRIOR_TURNS = 3;
+  // Points on a single agent in one turn that count as a burst (same threshold as the burst factor of IdentityTracker)
+  private static final int BURST_POINTS = 4;
 
   private int NumbRolls = 0;
 
@@ -26,6 +30,9 @@ public class DiceTracker {
   private final int[][] totalPointsPerAgent;
 
   private final int[] turnCounters;
+  private final int[] burstTurns;
+  // Concentration expected per player before its first turn, e.g. from an opponent profile
+  private final double[] concentrationPrior;
   private final int numPlayers;
 
   /**
@@ -36,6 +43,17 @@ public class DiceTracker {
     this.movementHistory = new int[numPlayers][NUM_AGENTS][MAX_TURNS];
     this.totalPointsPerAgent = new int[numPlayers][NUM_AGENTS];
     this.turnCounters = new int[numPlayers];
+    this.burstTurns = new int[numPlayers];
+    this.concentrationPrior = new double[numPlayers];
+  }
+
+  /**
+   * Sets the concentration a player's measurement is shrunk towards while only few turns have been recorded
+   * (0 by default, i.e. no preference for an agent is assumed).
+   */
+  public void setConcentrationPrior(int playerID, double concentration) {
+    if (playerID < 0 || playerID >= numPlayers) return;
+    concentrationPrior[playerID] = concentration;
   }
 
   /**
@@ -44,21 +62,36 @@ public class DiceTracker {
    * @param agentMoves Map of Agents to points spent.
    */
   public void recordTurnMovement(int playerID, Map<Agent, Integer> agentMoves) {
+    int[] steps = new int[NUM_AGENTS];
+    for (Map.Entry<Agent, Integer> entry : agentMoves.entrySet()) {
+      steps[entry.getKey().ordinal()] = entry.getValue();
+    }
+    recordTurnMovement(playerID, steps);
+  }
+
+  /**
+   * Records movement and updates pre-computed totals, without creating any objects.
+   * @param playerID The ID of the player making the move.
+   * @param steps Points spent per agent, indexed by Agent ordinal (see ActionCodec.getSteps); only read.
+   */
+  public void recordTurnMovement(int playerID, int[] steps) {
     if (playerID < 0 || playerID >= numPlayers) return;
 
     int currentTurn = turnCounters[playerID];
     if (currentTurn >= MAX_TURNS) return;
 
-    for (Agent agent : Agent.values()) {
-      int agentIndex = agent.ordinal();
-      int pointsAssigned = agentMoves.getOrDefault(agent, 0);
+    boolean burst = false;
+    for (int agentIndex = 0; agentIndex < NUM_AGENTS; agentIndex++) {
+      int pointsAssigned = steps[agentIndex];
 
       // 1. Store in history for strategy analysis
       movementHistory[playerID][agentIndex][currentTurn] = pointsAssigned;
 
       // 2. Update pre-computed totals for instant retrieval
       totalPointsPerAgent[playerID][agentIndex] += pointsAssigned;
+      burst |= pointsAssigned >= BURST_POINTS;
     }
+    if (burst) burstTurns[playerID]++;
 
     NumbRolls++;
     turnCounters[playerID]++;
@@ -93,11 +126,53 @@ public class DiceTracker {
     return movementHistory[playerID][agent.ordinal()];
   }
 
+  /**
+   * Measures how concentrated a player's movement has been, i.e. how much of its points went to its most pushed agent.
+   * 0 means the points were spread evenly over all agents (or nothing is known yet), 1 means all points went to a
+   * single agent. The value is shrunk towards the prior of the player (see {@link #setConcentrationPrior}) while only
+   * few turns have been recorded.
+   */
+  public double getMovementConcentration(int playerID) {
+    if (playerID < 0 || playerID >= numPlayers) return 0.0;
+    int turns = turnCounters[playerID];
+    return (getObservedMovementConcentration(playerID) * turns + concentrationPrior[playerID] * CONCENTRATION_PRIOR_TURNS)
+        / (turns + CONCENTRATION_PRIOR_TURNS);
+  }
+
+  /**
+   * Like {@link #getMovementConcentration(int)}, but only the recorded turns count (0 if there are none).
+   */
+  public double getObservedMovementConcentration(int playerID) {
+    if (playerID < 0 || playerID >= numPlayers) return 0.0;
+    int total = 0;
+    int max = 0;
+    for (int points : totalPointsPerAgent[playerID]) {
+      total += points;
+      max = Math.max(max, points);
+    }
+    if (total == 0) return 0.0;
+
+    double evenShare = 1.0 / NUM_AGENTS;
+    return ((double) max / total - evenShare) / (1.0 - evenShare);
+  }
+
+  /**
+   * Returns the number of turns in which the player moved a single agent by at least 4 points.
+   */
+  public int getBurstTurns(int playerID) {
+    if (playerID < 0 || playerID >= numPlayers) return 0;
+    return burstTurns[playerID];
+  }
+
   public int getTurnCount(int playerID) {
     if (playerID < 0 || playerID >= numPlayers) return 0;
     return turnCounters[playerID];
   }
 
+  public int getNumberOfPlayers() {
+    return numPlayers;
+  }
+
   public int getNumbRolls(){
     return NumbRolls;
   }
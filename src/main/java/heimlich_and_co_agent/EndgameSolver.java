@@ -0,0 +1,263 @@
+package heimlich_and_co_agent;
+
+import heimlich_and_co.HeimlichAndCo;
+import heimlich_and_co.actions.HeimlichAndCoAction;
+import heimlich_and_co.actions.HeimlichAndCoDieRollAction;
+import heimlich_and_co.enums.Agent;
+import heimlich_and_co.enums.HeimlichAndCoPhase;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Exact expectimax solver for the end of the game.
+ * <p>
+ * Searches all move choices and die outcomes for a number of full turns, deepening one turn at a time, so a game that
+ * ends in the current turn is proven with few nodes. Only finished games are valued, with the reward of every player
+ * as in the playouts ({@link MCTSNode#outcome}); every player picks the move that is best for itself (max^n, equal
+ * values are broken against our player as in MCTSNode), die rolls are averaged over all faces.
+ * A line that does not end within the turns has no value. A decision is still proven if one of its moves is proven to
+ * give the player to act the win utility, otherwise all of its moves (all faces of a die roll) have to be proven. The
+ * solver only answers if the value of the root is proven this way, so it never replaces MCTS with a guess.
+ * <p>
+ * Values are memoized per (state hash, turns left), so transpositions inside the search are only solved once. The
+ * solver also gives up (returns null) when its node budget is exhausted or the computation should stop; in every case
+ * without an answer the agent falls back to MCTS.
+ */
+public class EndgameSolver {
+
+    /**
+     * Score at which the game ends.
+     */
+    static final int WINNING_SCORE = 42;
+    /**
+     * Most points a single agent can get in one scoring round (building 10).
+     */
+    private static final int MAX_POINTS_PER_SCORING = 10;
+
+    /**
+     * Memoized value of a state whose outcome is not decided within the turns left.
+     */
+    private static final double[] UNPROVEN = new double[0];
+
+    private final int playerId;
+    private final int maxTurns;
+    private final int nodeBudget;
+    private final boolean canonicalOrder;
+    private final SearchParameters parameters;
+    private final Map<Long, double[]> memo;
+    private BooleanSupplier shouldStop;
+    private int nodes;
+    private boolean aborted;
+
+    /**
+     * @param playerId   player for which the best action is searched
+     * @param maxTurns   most turns that are searched, the current one included
+     * @param nodeBudget maximum number of states to evaluate before giving up
+     * @param parameters utilities of the outcomes of a game
+     */
+    public EndgameSolver(int playerId, int maxTurns, int nodeBudget, SearchParameters parameters) {
+        this(playerId, maxTurns, nodeBudget, false, parameters);
+    }
+
+    /**
+     * @param canonicalOrder whether actions are searched in the order of their codes (see
+     *                       {@link ActionCodec#sortByCode}), so the result and the evaluated nodes are the same in every
+     *                       run; costs a sort per node
+     */
+    public EndgameSolver(int playerId, int maxTurns, int nodeBudget, boolean canonicalOrder, SearchParameters parameters) {
+        this.playerId = playerId;
+        this.maxTurns = maxTurns;
+        this.nodeBudget = nodeBudget;
+        this.canonicalOrder = canonicalOrder;
+        this.parameters = parameters;
+        this.memo = new HashMap<>();
+    }
+
+    /**
+     * Checks whether the next scoring round may decide the game, i.e. whether an agent is close enough to the winning
+     * score for the game end to be within reach of the solver. Only a cheap filter: whether the game really ends within
+     * the searched turns is proven by the solver.
+     */
+    public static boolean isEndgame(HeimlichAndCo game) {
+        Map<Agent, Integer> scores = game.getBoard().getScores();
+        for (Agent agent : game.getBoard().getAgents()) {
+            if (scores.get(agent) + MAX_POINTS_PER_SCORING >= WINNING_SCORE) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Searches the best action for the player in the given (determinized) game.
+     *
+     * @param game       game in which the player has to decide; is not modified
+     * @param shouldStop checked regularly, the search is aborted when it returns true
+     * @return the best action or null if its value could not be proven
+     */
+    public HeimlichAndCoAction solve(HeimlichAndCo game, BooleanSupplier shouldStop) {
+        this.shouldStop = shouldStop;
+        this.nodes = 0;
+        this.aborted = false;
+        this.memo.clear();
+
+        HeimlichAndCo root = new HeimlichAndCo(game);
+        root.setAllowCustomDieRolls(true);
+        // the history is not needed for the search, clearing it makes copying the states a lot cheaper
+        root.getActionRecords().clear();
+
+        // the node budget is shared by all horizons, the memo too (its keys include the turns left)
+        for (int turns = 1; turns <= maxTurns; turns++) {
+            HeimlichAndCoAction action = solveRoot(root, turns);
+            if (action != null || aborted) {
+                return action;
+            }
+        }
+        return null;
+    }
+
+    public int getEvaluatedNodes() {
+        return nodes;
+    }
+
+    /**
+     * @return the best action at the root if its value is proven within the given turns, otherwise null
+     */
+    private HeimlichAndCoAction solveRoot(HeimlichAndCo root, int turns) {
+        HeimlichAndCoAction bestAction = null;
+        double[] bestValue = null;
+        boolean allProven = true;
+        for (HeimlichAndCoAction action : inSearchOrder(root.getPossibleActions())) {
+            if (isRandomRoll(action)) {
+                continue;
+            }
+            double[] value = childValue(root, action, turns);
+            if (aborted) {
+                return null;
+            }
+            if (value == UNPROVEN) {
+                allProven = false;
+                continue;
+            }
+            if (bestValue == null || isPreferred(value, bestValue, playerId)) {
+                bestValue = value;
+                bestAction = action;
+            }
+            if (bestValue[playerId] >= parameters.getWinUtility()) {
+                return bestAction;
+            }
+        }
+        return allProven ? bestAction : null;
+    }
+
+    /**
+     * @return the value of the state after the action, a new turn counts against the turns left
+     */
+    private double[] childValue(HeimlichAndCo game, HeimlichAndCoAction action, int turnsLeft) {
+        HeimlichAndCo child = game.doAction(action);
+        return value(child, child.getCurrentTurnPlayer() != game.getCurrentTurnPlayer() ? turnsLeft - 1 : turnsLeft);
+    }
+
+    /**
+     * @return reward per player, or {@link #UNPROVEN} if the outcome is not decided within the turns left (also when the
+     * search was aborted)
+     */
+    private double[] value(HeimlichAndCo game, int turnsLeft) {
+        if (game.isGameOver()) {
+            return MCTSNode.outcome(game, parameters);
+        }
+        if (turnsLeft <= 0) {
+            return UNPROVEN;
+        }
+        // checked at every node: a node copies the game for every option, so a few hundred nodes can take seconds
+        if (++nodes > nodeBudget || shouldStop.getAsBoolean()) {
+            aborted = true;
+            return UNPROVEN;
+        }
+        long key = StateHasher.hash(game) + turnsLeft * 0x9E3779B97F4A7C15L;
+        double[] cached = memo.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        Set<HeimlichAndCoAction> possibleActions = game.getPossibleActions();
+        double[] value;
+        if (game.getCurrentPhase() == HeimlichAndCoPhase.DIE_ROLL_PHASE) {
+            value = new double[game.getNumberOfPlayers()];
+            int outcomes = 0;
+            for (HeimlichAndCoAction action : inSearchOrder(possibleActions)) {
+                if (isRandomRoll(action)) {
+                    continue;
+                }
+                double[] outcomeValue = childValue(game, action, turnsLeft);
+                if (outcomeValue == UNPROVEN) {
+                    // an unproven face leaves the average unproven (or the search was aborted)
+                    value = UNPROVEN;
+                    break;
+                }
+                for (int player = 0; player < value.length; player++) {
+                    value[player] += outcomeValue[player];
+                }
+                outcomes++;
+            }
+            if (value != UNPROVEN) {
+                for (int player = 0; player < value.length; player++) {
+                    value[player] /= outcomes;
+                }
+            }
+        } else if (possibleActions.size() == 1) {
+            // forced actions (e.g. skipping without cards) do not branch
+            value = childValue(game, possibleActions.iterator().next(), turnsLeft);
+        } else {
+            int actingPlayer = game.getCurrentPlayer();
+            double[] best = null;
+            boolean allProven = true;
+            for (HeimlichAndCoAction action : inSearchOrder(possibleActions)) {
+                double[] childValue = childValue(game, action, turnsLeft);
+                if (aborted) {
+                    return UNPROVEN;
+                }
+                if (childValue == UNPROVEN) {
+                    allProven = false;
+                    continue;
+                }
+                if (best == null || isPreferred(childValue, best, actingPlayer)) {
+                    best = childValue;
+                }
+                if (best[actingPlayer] >= parameters.getWinUtility()) {
+                    break; // cannot get any better for the player to act
+                }
+            }
+            boolean proven = best != null && (allProven || best[actingPlayer] >= parameters.getWinUtility());
+            value = proven ? best : UNPROVEN;
+        }
+        if (aborted) {
+            return UNPROVEN;
+        }
+        memo.put(key, value);
+        return value;
+    }
+
+    /**
+     * Whether the player to act prefers the candidate rewards over the current ones: by its own reward, equal rewards
+     * are broken against our player (like {@link MCTSNode} does).
+     */
+    private boolean isPreferred(double[] candidate, double[] current, int actingPlayer) {
+        if (candidate[actingPlayer] != current[actingPlayer]) {
+            return candidate[actingPlayer] > current[actingPlayer];
+        }
+        return actingPlayer == playerId ? candidate[playerId] > current[playerId] : candidate[playerId] < current[playerId];
+    }
+
+    private Iterable<HeimlichAndCoAction> inSearchOrder(Set<HeimlichAndCoAction> actions) {
+        return canonicalOrder ? Arrays.asList(ActionCodec.sortByCode(actions)) : actions;
+    }
+
+    private static boolean isRandomRoll(HeimlichAndCoAction action) {
+        return action instanceof HeimlichAndCoDieRollAction && action.equals(HeimlichAndCoDieRollAction.getRandomRollAction());
+    }
+}
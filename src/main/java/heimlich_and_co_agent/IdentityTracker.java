@@ -4,16 +4,46 @@ import heimlich_and_co.enums.Agent;
 import java.util.Arrays;
 
 public class IdentityTracker {
+  // Agent.values() copies the array on every call
+  private static final Agent[] AGENTS = Agent.values();
+
   private final int numPlayers;
   private final DiceTracker diceTracker;
 
+  // Suspicion added per recent burst of a player without a prior
+  private static final double BURST_WEIGHT = 0.2;
+  // Upper bound for the expected share of a player's points on its own agent, so a single move never rules out an agent
+  private static final double MAX_OWN_SHARE = 0.95;
+
   // The "Suspicion Meter" [PlayerIndex][AgentIndex]
   private final double[][] suspicionMatrix;
 
+  // Behaviour known from earlier games per player, NaN if the player has no profile
+  private final double[] concentrationPrior;
+  private final double[] burstRatePrior;
+
   public IdentityTracker(int numPlayers, DiceTracker diceTracker) {
     this.numPlayers = numPlayers;
     this.diceTracker = diceTracker;
     this.suspicionMatrix = new double[numPlayers][7];
+    this.concentrationPrior = new double[numPlayers];
+    this.burstRatePrior = new double[numPlayers];
+    Arrays.fill(concentrationPrior, Double.NaN);
+    Arrays.fill(burstRatePrior, Double.NaN);
+  }
+
+  /**
+   * Sets what is known about a player from earlier games (see {@link OpponentProfiles}). The suspicion of the player
+   * is then a posterior: every turn is evidence for the agents it moved, weighted by how concentrated the player
+   * usually moves, so a player who bluffs needs more turns to give itself away than one who always pushes its own
+   * agent. Without a prior, the suspicion is the share of the player's points per agent.
+   *
+   * @param concentration usual movement concentration of the player (see {@link DiceTracker#getMovementConcentration})
+   * @param burstRate     usual share of the player's turns that are bursts (see {@link DiceTracker#getBurstTurns})
+   */
+  public void setPrior(int playerID, double concentration, double burstRate) {
+    concentrationPrior[playerID] = concentration;
+    burstRatePrior[playerID] = burstRate;
   }
 
   /**
@@ -23,40 +53,92 @@ public class IdentityTracker {
    */
   public void calculateSuspicion() {
     for (int p = 0; p < numPlayers; p++) {
-      int totalPointsByPlayer = 0;
-      for (Agent agent : Agent.values()) {
-        totalPointsByPlayer += diceTracker.getTotalInvestedPoints(p, agent);
-      }
+      calculateSuspicion(p);
+    }
+  }
 
-      if (totalPointsByPlayer == 0) continue;
+  /**
+   * Updates the suspicion scores of a single player, e.g. when a card decision of the player is weighed by its agent.
+   * Only depends on the moves recorded so far, like {@link #calculateSuspicion()}.
+   */
+  public void calculateSuspicion(int p) {
+    if (!Double.isNaN(concentrationPrior[p])) {
+      calculatePosterior(p);
+      return;
+    }
+    int totalPointsByPlayer = 0;
+    for (Agent agent : AGENTS) {
+      totalPointsByPlayer += diceTracker.getTotalInvestedPoints(p, agent);
+    }
 
-      for (Agent agent : Agent.values()) {
-        int agentIdx = agent.ordinal();
-        // Basic probability: what % of moves were for this agent?
-        double basicProb = (double) diceTracker.getTotalInvestedPoints(p, agent) / totalPointsByPlayer;
+    if (totalPointsByPlayer == 0) return;
 
-        // Advanced: check the 3D history for "Burst" behavior
-        int[] history = diceTracker.getMovementHistoryForAgent(p, agent);
-        double burstModifier = calculateBurstFactor(history);
+    for (Agent agent : AGENTS) {
+      int agentIdx = agent.ordinal();
+      // Basic probability: what % of moves were for this agent?
+      double basicProb = (double) diceTracker.getTotalInvestedPoints(p, agent) / totalPointsByPlayer;
 
-        suspicionMatrix[p][agentIdx] = basicProb * burstModifier;
-      }
+      // Advanced: check the 3D history for "Burst" behavior
+      int[] history = diceTracker.getMovementHistoryForAgent(p, agent);
+      double burstModifier = calculateBurstFactor(history, Math.min(diceTracker.getTurnCount(p), history.length), BURST_WEIGHT);
+
+      suspicionMatrix[p][agentIdx] = basicProb * burstModifier;
+    }
 
-      // Normalize the row so probabilities sum to 1.0
-      normalizeRow(p);
+    // Normalize the row so probabilities sum to 1.0
+    normalizeRow(p);
+  }
+
+  /**
+   * Suspicion of a player with a prior: the player moves its own agent with its usual share of points q and the other
+   * agents with the rest, so every turn multiplies the odds of the agents it moved by (q * (agents - 1) / (1 - q)) to
+   * the power of their share of the turn. Bursts are weighted by how unusual they are for the player.
+   */
+  private void calculatePosterior(int p) {
+    int agents = suspicionMatrix[p].length;
+    double ownShare = Math.min(MAX_OWN_SHARE, 1.0 / agents + concentrationPrior[p] * (1.0 - 1.0 / agents));
+    double logOdds = Math.log(ownShare * (agents - 1) / (1.0 - ownShare));
+    double burstWeight = Double.isNaN(burstRatePrior[p]) ? BURST_WEIGHT : 2 * BURST_WEIGHT * (1.0 - burstRatePrior[p]);
+
+    int turns = Math.min(diceTracker.getTurnCount(p), diceTracker.getMovementHistoryForAgent(p, AGENTS[0]).length);
+    double maxLogScore = Double.NEGATIVE_INFINITY;
+    for (Agent agent : AGENTS) {
+      suspicionMatrix[p][agent.ordinal()] = 0.0;
+    }
+    for (int t = 0; t < turns; t++) {
+      int pointsInTurn = 0;
+      for (Agent agent : AGENTS) {
+        pointsInTurn += diceTracker.getMovementHistoryForAgent(p, agent)[t];
+      }
+      if (pointsInTurn == 0) continue;
+      for (Agent agent : AGENTS) {
+        suspicionMatrix[p][agent.ordinal()] += logOdds * diceTracker.getMovementHistoryForAgent(p, agent)[t] / pointsInTurn;
+      }
+    }
+    for (Agent agent : AGENTS) {
+      int agentIdx = agent.ordinal();
+      int[] history = diceTracker.getMovementHistoryForAgent(p, agent);
+      suspicionMatrix[p][agentIdx] += Math.log(calculateBurstFactor(history, turns, burstWeight));
+      maxLogScore = Math.max(maxLogScore, suspicionMatrix[p][agentIdx]);
+    }
+    for (int i = 0; i < agents; i++) {
+      suspicionMatrix[p][i] = Math.exp(suspicionMatrix[p][i] - maxLogScore);
     }
+    normalizeRow(p);
   }
 
   /**
    * Detects if an agent was pushed "a lot at a time" (Burst Strategy)
    * as mentioned in your 3D array request.
+   *
+   * @param turns number of recorded turns in the history (the array is longer)
    */
-  private double calculateBurstFactor(int[] history) {
+  private double calculateBurstFactor(int[] history, int turns, double burstWeight) {
     // High values in recent turns significantly increase suspicion
     double factor = 1.0;
     int recentTurnsToCheck = 5;
-    for (int i = history.length - 1; i >= 0 && i >= history.length - recentTurnsToCheck; i--) {
-      if (history[i] > 3) factor += 0.2; // They spent a lot of points at once
+    for (int i = turns - 1; i >= 0 && i >= turns - recentTurnsToCheck; i--) {
+      if (history[i] > 3) factor += burstWeight; // They spent a lot of points at once
     }
     return factor;
   }
@@ -0,0 +1,131 @@
+package heimlich_and_co_agent;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from non-negative int keys (e.g. action codes of {@link ActionCodec}) to objects.
+ * <p>
+ * Avoids boxing the keys and calling hashCode/equals of the engine's action objects. Uses linear probing and keeps the
+ * load factor at or below 0.5. Entries cannot be removed.
+ *
+ * @param <V> type of the values
+ */
+public class IntObjectMap<V> {
+
+    private static final int EMPTY = -1;
+
+    private int[] keys;
+    private Object[] values;
+    private int size;
+    private int mask;
+
+    public IntObjectMap() {
+        this(8);
+    }
+
+    /**
+     * @param expectedSize number of entries that fit without resizing
+     */
+    public IntObjectMap(int expectedSize) {
+        allocate(Integer.highestOneBit(Math.max(4, expectedSize) * 2 - 1) << 1);
+    }
+
+    /**
+     * @param key non-negative key
+     * @return the value stored for the key or null
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        int slot = slot(key);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return (V) values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Stores a value for a key, replacing the previous value.
+     *
+     * @param key   non-negative key
+     * @param value value to store, must not be null
+     */
+    public void put(int key, V value) {
+        if (key < 0) {
+            throw new IllegalArgumentException("Key must not be negative");
+        }
+        if ((size + 1) * 2 > keys.length) {
+            resize();
+        }
+        int slot = slot(key);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the number of slots; together with {@link #keyAt(int)} and {@link #valueAt(int)} this allows iterating
+     * without allocating an iterator. Empty slots have the key -1.
+     */
+    public int capacity() {
+        return keys.length;
+    }
+
+    public int keyAt(int slot) {
+        return keys[slot];
+    }
+
+    @SuppressWarnings("unchecked")
+    public V valueAt(int slot) {
+        return (V) values[slot];
+    }
+
+    private int slot(int key) {
+        int hash = key * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private void resize() {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = slot(oldKeys[i]);
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        values = new Object[capacity];
+        mask = capacity - 1;
+    }
+}
@@ -12,21 +12,20 @@ import heimlich_and_co.enums.Agent;
 import heimlich_and_co.enums.HeimlichAndCoPhase;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 public class MCTSNode {
 
     /**
-     * This constant balances between exploration and exploitation.
-     * The usually recommended value for this is square root of 2, but performance may be improved by changing it.
+     * Playouts a summary of an earlier search seeds a new node with at most (see {@link #setValueCache}), so the playouts
+     * of this search soon outweigh an estimate that was made in another determinization.
      */
-    private static final double C = Math.sqrt(2);
+    private static final int MAX_PRIOR_PLAYOUTS = 8;
 
     /**
      * Saves the player id of the player for which the tree is build. I.e. the player for which the best action should
-     * be chosen in the end.
+     * be chosen in the end. Same for all nodes of a tree.
      */
-    private static int playerId;
+    private final int playerId;
     /**
      * the depth of this node; 0 for root node
      */
@@ -37,68 +36,194 @@ public class MCTSNode {
     private final HeimlichAndCo game;
     /**
      * All resulting child states that have been explored at least once.
-     * A child node is reached by taking (applying) the action that is used as the key.
+     * A child node is reached by taking (applying) the action whose code (see {@link ActionCodec}) is used as the key.
      */
-    private final Map<HeimlichAndCoAction, MCTSNode> children;
+    private final IntObjectMap<MCTSNode> children;
+    /**
+     * constants of the search (exploration constant, pruning, heuristic weights); shared by all nodes of a tree
+     */
+    private final SearchParameters parameters;
+    /**
+     * Interchangeable agents of the game state, computed on first use. Children are keyed by the canonical code of
+     * their action, so equivalent agent moves share one child.
+     */
+    private MoveSymmetry symmetry;
+    /**
+     * number of actions applied on the edge from the parent to this node; more than 1 if forced actions were collapsed
+     * into the edge (see {@link #expansion(HeimlichAndCoAction, boolean)})
+     */
+    private int actionsOnEdge = 1;
     /**
      * parent of this node; null for root node
      */
-    private final MCTSNode parent;
+    private MCTSNode parent;
+    /**
+     * breaks ties in the selection, same for all nodes of a tree
+     */
     private final Random random;
     /**
-     * saves how many wins were achieved from this node
+     * sums of the rewards achieved from this node, per player; the entry of {@link #playerId} is the number of wins
      */
-    private double wins;
+    private final double[] rewards;
     /**
      * saves how many playouts were done from this node (or descendents of this node)
      */
     private int playouts;
-    private final Comparator<HeimlichAndCoAction> actionComparatorUct = Comparator.comparingDouble(this::calculateUCT);
-    private final Comparator<HeimlichAndCoAction> actionComparatorQsa = Comparator.comparingDouble(this::calculateQsaOfChild);
+    /**
+     * the player to act in the state of this node, whose reward the selection maximizes here
+     */
+    private final int actingPlayer;
+    /**
+     * Candidates of the selection, computed on the first visit (the state of a node does not change): the actions and
+     * the keys of their children, in a fixed order. Null until then.
+     */
+    private HeimlichAndCoAction[] actions;
+    private int[] actionCodes;
+    /**
+     * whether the candidates were computed with the outcomes of die rolls as separate actions
+     */
+    private boolean candidatesForAllOutcomes;
+    /**
+     * Statistics of the child per candidate (same order as the candidates), kept up to date by the backpropagation so
+     * the selection does not have to look up the children: the child (null if not expanded yet), its playouts, the
+     * summed reward of the acting player of this node and 1 / sqrt(playouts) for the exploration term.
+     */
+    private MCTSNode[] childNodes;
+    private int[] childPlayouts;
+    private double[] childValues;
+    private double[] childInverseSqrtPlayouts;
+    /**
+     * index of this node in the candidates of its parent, -1 if it is not one of them (or it is a root)
+     */
+    private int indexInParent = -1;
+    /**
+     * Proven reward per player if the outcome of this node is decided: the game is over, or the solved children decide
+     * it (see {@link #trySolve()}). Null while it is not. Solved subtrees are not selected anymore.
+     */
+    private double[] solvedRewards;
+    /**
+     * Indices of the candidates that are still in the race of a sequential halving at this node (see
+     * {@link #startSequentialHalving(boolean)}), best first after every round. Null when UCT selects here.
+     */
+    private int[] survivors;
+    private int survivorCount;
+    /**
+     * Best candidate the searching thread published last (see {@link #publishBestActionSoFar()}), so other threads
+     * never read the statistics while they change; null before the first publication.
+     */
+    private volatile HeimlichAndCoAction bestActionSoFar;
+    /**
+     * summaries of earlier searches that seed the nodes this tree expands, null for none; same for all nodes of a tree
+     */
+    private ValueCache valueCache;
+    /**
+     * playouts and reward per player this node was seeded with from the value cache, part of its statistics; 0 and
+     * null if it was not seeded
+     */
+    private int priorPlayouts;
+    private double[] priorRewards;
+    /**
+     * canonical hash of the state of this node as the player of the tree knows it (see
+     * {@link StateHasher#hashInformationSet}), computed on first use; 0 until then
+     */
+    private long stateHash;
 
-    public MCTSNode(double wins, int playouts, HeimlichAndCo game, MCTSNode parent) {
-        this(game, parent);
-        this.wins = wins;
-        this.playouts = playouts;
+    /**
+     * Creates a child node, which belongs to the same tree (player and parameters) as its parent.
+     */
+    public MCTSNode(HeimlichAndCo game, MCTSNode parent) {
+        this(game, requireParent(parent).playerId, parent, parent.parameters, parent.random);
     }
 
-    public MCTSNode(HeimlichAndCo game, MCTSNode parent) {
+    public MCTSNode(HeimlichAndCo game, int playerId, MCTSNode parent, SearchParameters parameters) {
+        this(game, playerId, parent, parameters, parent != null ? parent.random : new Random());
+    }
+
+    /**
+     * @param random breaks ties in the selection; seeded for reproducible searches
+     */
+    public MCTSNode(HeimlichAndCo game, int playerId, MCTSNode parent, SearchParameters parameters, Random random) {
         this.game = new HeimlichAndCo(game, false);
+        this.playerId = playerId;
         this.parent = parent;
+        this.parameters = parameters;
         if (parent != null) {
             this.depth = parent.depth + 1;
         } else {
             this.depth = 0;
         }
-        this.children = new HashMap<>();
-        this.random = new Random();
+        this.children = new IntObjectMap<>();
+        this.random = random;
+        this.valueCache = parent != null ? parent.valueCache : null;
+        this.rewards = new double[this.game.getNumberOfPlayers()];
+        int currentPlayer = this.game.getCurrentPlayer();
+        this.actingPlayer = currentPlayer >= 0 && currentPlayer < rewards.length ? currentPlayer : playerId;
+    }
+
+    private static MCTSNode requireParent(MCTSNode parent) {
+        if (parent == null) {
+            throw new IllegalArgumentException("The root node needs the player id and search parameters");
+        }
+        return parent;
+    }
+
+    /**
+     * Detaches this node from its parent, so it can be used as the root of a new search (e.g. when reusing a subtree
+     * after the actions leading to it have been played).
+     */
+    public void makeRoot() {
+        this.parent = null;
+        this.indexInParent = -1;
+        this.survivors = null;
     }
 
-    public static void setPlayerId(int playerId) {
-        MCTSNode.playerId = playerId;
+    /**
+     * Returns the child reached by the given action.
+     *
+     * @param action leading to the child
+     * @return the child or null if the node was not expanded with this action
+     */
+    public MCTSNode getChild(HeimlichAndCoAction action) {
+        return this.children.get(keyOf(action));
     }
 
     /**
-     * Does backpropagation starting from the current node.
-     * Therefore, always increases playouts and increases wins depending on win.
+     * Does backpropagation of a batch of playouts with a reward per player starting from the current node.
      *
-     * @param reward indicating whether the game was won or not (1 on win, 0 on loss).
+     * @param rewardSums sum of the rewards of all playouts in the batch per player, each between 0 and count
+     * @param count      number of playouts in the batch
      */
-    public void backpropagation(double reward) {
-        if (reward < 0.0 && reward > 1.0) {
-            throw new IllegalArgumentException("Reward must be between 0 and 1");
+    public void backpropagation(double[] rewardSums, int count) {
+        if (count <= 0 || rewardSums.length != rewards.length) {
+            throw new IllegalArgumentException("Need a reward sum per player of a non-empty batch");
         }
-        this.playouts++;
-        this.wins += reward;
-        if (this.parent != null) {
-            this.parent.backpropagation(reward);
+        for (double rewardSum : rewardSums) {
+            if (rewardSum < 0.0 || rewardSum > count) {
+                throw new IllegalArgumentException("Reward sum must be between 0 and the number of playouts");
+            }
         }
+        for (MCTSNode node = this; node != null; node = node.parent) {
+            node.playouts += count;
+            for (int player = 0; player < node.rewards.length; player++) {
+                node.rewards[player] += rewardSums[player];
+            }
+            if (node.parent != null && node.indexInParent >= 0) {
+                node.parent.updateChildStatistics(node.indexInParent, count, rewardSums[node.parent.actingPlayer]);
+            }
+        }
+    }
+
+    private void updateChildStatistics(int index, int count, double reward) {
+        childPlayouts[index] += count;
+        childValues[index] += reward;
+        childInverseSqrtPlayouts[index] = 1.0 / Math.sqrt(childPlayouts[index]);
     }
 
     /**
      * Calculates the Q(s,a) of a state (i.e. current game state) and an action. This is the expected percentage of wins when taking action a in state s.
      * Formula: #wins/ #playouts
-     * Therefore the best score that can be achieved is 1, the worst is 0.
+     * Therefore the best score that can be achieved is 1, the worst is 0. For a child whose outcome is proven, this is
+     * its proven reward instead.
      * <p>
      * Note: The action has to be contained in the children of this node.
      *
@@ -106,10 +231,18 @@ public class MCTSNode {
      * @return expected percentage of wins when playing action in the current state
      */
     public double calculateQsaOfChild(HeimlichAndCoAction action) {
-        if (!this.children.containsKey(action)) {
+        return calculateQsaOfChild(keyOf(action));
+    }
+
+    private double calculateQsaOfChild(int actionCode) {
+        MCTSNode child = this.children.get(actionCode);
+        if (child == null) {
             throw new IllegalArgumentException("Action is not contained in children");
         }
-        return ((double) children.get(action).wins) / children.get(action).playouts;
+        if (child.solvedRewards != null) {
+            return child.solvedRewards[playerId];
+        }
+        return child.rewards[playerId] / child.playouts;
     }
 
     /**
@@ -122,56 +255,460 @@ public class MCTSNode {
      * @return Game node that
      */
     public MCTSNode expansion(HeimlichAndCoAction action) {
+        return expansion(action, false);
+    }
+
+    /**
+     * Expands the current node with the given action and returns the created node.
+     * <p>
+     * In a compact tree, the actions following the given one are applied as well as long as they are forced, i.e. as
+     * long as there is only one possible action that is not a die roll (e.g. skipping the card phase without cards or a
+     * single safe move). The edge to the new node then stands for this macro-action, which saves a tree level and a node
+     * per forced action.
+     *
+     * @param action      to apply
+     * @param compactTree whether forced actions should be collapsed into the edge
+     * @return Game node that
+     */
+    public MCTSNode expansion(HeimlichAndCoAction action, boolean compactTree) {
+        if (action != null && !game.isValidAction(action)) {
+            throw new IllegalArgumentException("The given action must be valid.");
+        }
+        return expandSelected(action, compactTree);
+    }
+
+    /**
+     * Like {@link #expansion(HeimlichAndCoAction, boolean)}, but without checking that the action is valid, for actions
+     * returned by the selection of this node.
+     */
+    MCTSNode expandSelected(HeimlichAndCoAction action, boolean compactTree) {
         if (action == null) {
             return this;
         }
-        if (!game.isValidAction(action)) {
-            throw new IllegalArgumentException("The given action must be valid.");
-        }
-        if (this.children.containsKey(action)) {
+        int actionCode = keyOf(action);
+        if (this.children.containsKey(actionCode)) {
             throw new IllegalArgumentException("The current node was already expanded with the given action");
         }
-        MCTSNode newNode = new MCTSNode(game.doAction(action), this);
-        this.children.put(action, newNode);
+        HeimlichAndCo nextGame = new HeimlichAndCo(game, false);
+        if (nextGame.isWithCards()) {
+            // the order of the hidden stack is unknown, so a card drawn in the tree is a random card of the stack: every
+            // expansion draws anew instead of always taking the top card of the determinization
+            Collections.shuffle(nextGame.getCardStack().getCards(), random);
+        }
+        nextGame.applyAction(action);
+        int appliedActions = 1;
+        while (compactTree && !nextGame.isGameOver() && nextGame.getCurrentPhase() != HeimlichAndCoPhase.DIE_ROLL_PHASE) {
+            Set<HeimlichAndCoAction> nextActions = nextGame.getPossibleActions();
+            if (nextActions.size() != 1) {
+                break;
+            }
+            nextGame.applyAction(nextActions.iterator().next());
+            appliedActions++;
+        }
+        MCTSNode newNode = new MCTSNode(nextGame, this);
+        newNode.actionsOnEdge = appliedActions;
+        if (valueCache != null && !nextGame.isGameOver()) {
+            newNode.seedFromCache();
+        }
+        this.children.put(actionCode, newNode);
+        if (actionCodes != null) {
+            for (int i = 0; i < actionCodes.length; i++) {
+                if (actionCodes[i] == actionCode) {
+                    linkChild(i, newNode);
+                    break;
+                }
+            }
+        }
+        if (nextGame.isGameOver()) {
+            newNode.solvedRewards = outcome(nextGame, parameters);
+            propagateSolved(newNode);
+        }
         return newNode;
     }
 
     /**
      * selects a node with UCT strategy
      * during the first round checks all possible actions before selecting an action twice
+     * with all die outcomes, a die roll draws one of its outcomes uniformly at random instead
      *
-     * @return this node and the selected action -> in the expansion phase the action can be taken from this node to get the new node
+     * @return the selected node without an action if its outcome is proven, else this node and the selected action -> in the expansion phase the action can be taken from this node to get the new node
      */
     public Pair<MCTSNode, HeimlichAndCoAction> selection(boolean simulateAllDiceOutcomes) {
-        Set<HeimlichAndCoAction> possibleActions = game.getPossibleActions();
-        // this means that this is a terminal game state
-        if (possibleActions.isEmpty()) {
-            return new ImmutablePair<>(this, null);
+        MCTSNode node = this;
+        while (true) {
+            if (node.actions == null || node.candidatesForAllOutcomes != simulateAllDiceOutcomes) {
+                node.computeCandidates(simulateAllDiceOutcomes);
+            }
+            // this means that this is a terminal game state (or the outcome of this node is proven)
+            if (node.actions.length == 0 || node.solvedRewards != null) {
+                return new ImmutablePair<>(node, null);
+            }
+            int selected;
+            if (node.survivors != null) {
+                selected = node.selectLeastVisitedSurvivor();
+            } else if (simulateAllDiceOutcomes && node.game.getCurrentPhase() == HeimlichAndCoPhase.DIE_ROLL_PHASE) {
+                // every outcome is drawn as often as it is rolled, the solved ones too, so the value of the die roll
+                // stays the expectation over all outcomes
+                selected = node.countUnsolved() == 0 ? -1 : random.nextInt(node.actions.length);
+                if (selected >= 0 && node.isSolvedChild(selected)) {
+                    // the proven reward of the outcome is backed up instead of a playout
+                    return new ImmutablePair<>(node.childNodes[selected], null);
+                }
+            } else {
+                selected = node.selectByUCT();
+            }
+            if (selected < 0) {
+                // all candidates are proven, but the node was not solved when they were (its candidates were not
+                // known yet), so it is solved now
+                if (node.trySolve()) {
+                    propagateSolved(node);
+                }
+                return new ImmutablePair<>(node, null);
+            }
+            MCTSNode child = node.childNodes[selected];
+            if (child == null) {
+                return new ImmutablePair<>(node, node.actions[selected]);
+            }
+            node = child;
         }
+    }
+
+    /**
+     * Computes the candidates of the selection and links the children that already exist (e.g. if the node was
+     * expanded before it was selected, or the candidates are computed again for the other die roll mode).
+     */
+    private void computeCandidates(boolean simulateAllDiceOutcomes) {
+        // a fixed order, so the same random numbers select the same actions in every run
+        Set<HeimlichAndCoAction> possibleActions = new LinkedHashSet<>(Arrays.asList(ActionCodec.sortByCode(game.getPossibleActions())));
+
+        // only one representative of every group of equivalent agent moves is searched
+        possibleActions = removeSymmetricActions(possibleActions);
 
-        // --- NEW PRUNING LOGIC ---
-        // If the branching factor is too high (e.g., > 20 actions), prune to top 10
-        if (possibleActions.size() > 20 && game.getCurrentPhase() == HeimlichAndCoPhase.AGENT_MOVE_PHASE) {
-            possibleActions = possibleActions.stream()
-                    .sorted((a1, a2) -> Double.compare(evaluateActionHeuristic(a2, game), evaluateActionHeuristic(a1, game)))
-                    .limit(10)
-                    .collect(Collectors.toSet());
+        // If the branching factor is too high (e.g., > 20 actions), prune to top 10 (see SearchParameters)
+        if (possibleActions.size() > parameters.getPruneThreshold() && game.getCurrentPhase() == HeimlichAndCoPhase.AGENT_MOVE_PHASE) {
+            possibleActions = pruneByHeuristic(possibleActions, parameters.getPruneKeep());
         }
-        // -------------------------
 
-        HeimlichAndCoAction selectedAction;
         if (simulateAllDiceOutcomes && game.getCurrentPhase() == HeimlichAndCoPhase.DIE_ROLL_PHASE) {
             possibleActions.remove(HeimlichAndCoDieRollAction.getRandomRollAction());
-            selectedAction = possibleActions.toArray(new HeimlichAndCoAction[1])[random.nextInt(possibleActions.size())];
-        } else {
-            List<HeimlichAndCoAction> maximumValuedActions = getMaximumValuedActions(possibleActions, this.actionComparatorUct);
-            selectedAction = maximumValuedActions.get(random.nextInt(maximumValuedActions.size()));
         }
 
-        if (this.children.containsKey(selectedAction)) {
-            return this.children.get(selectedAction).selection(simulateAllDiceOutcomes);
+        // the survivors of a sequential halving are indices of the old candidates
+        survivors = null;
+        if (childNodes != null) {
+            // the children of the old candidates may not be candidates anymore
+            for (MCTSNode child : childNodes) {
+                if (child != null) {
+                    child.indexInParent = -1;
+                }
+            }
+        }
+        int count = possibleActions.size();
+        actions = possibleActions.toArray(new HeimlichAndCoAction[0]);
+        actionCodes = new int[count];
+        childNodes = new MCTSNode[count];
+        childPlayouts = new int[count];
+        childValues = new double[count];
+        childInverseSqrtPlayouts = new double[count];
+        candidatesForAllOutcomes = simulateAllDiceOutcomes;
+        for (int i = 0; i < count; i++) {
+            actionCodes[i] = keyOf(actions[i]);
+            MCTSNode child = children.get(actionCodes[i]);
+            if (child != null) {
+                linkChild(i, child);
+            }
+        }
+    }
+
+    private void linkChild(int index, MCTSNode child) {
+        childNodes[index] = child;
+        child.indexInParent = index;
+        childPlayouts[index] = child.playouts;
+        childValues[index] = child.rewards[actingPlayer];
+        childInverseSqrtPlayouts[index] = child.playouts > 0 ? 1.0 / Math.sqrt(child.playouts) : 0.0;
+    }
+
+    /**
+     * Keeps the agent moves with the best heuristic values (see {@link #evaluateActionHeuristic}), evaluating every move
+     * once. Moves with equal values keep their order.
+     */
+    private Set<HeimlichAndCoAction> pruneByHeuristic(Set<HeimlichAndCoAction> possibleActions, int keep) {
+        HeimlichAndCoAction[] candidates = possibleActions.toArray(new HeimlichAndCoAction[0]);
+        double[] values = new double[candidates.length];
+        Integer[] order = new Integer[candidates.length];
+        for (int i = 0; i < candidates.length; i++) {
+            values[i] = evaluateActionHeuristic(candidates[i], game);
+            order[i] = i;
+        }
+        Arrays.sort(order, (i1, i2) -> Double.compare(values[i2], values[i1]));
+        Set<HeimlichAndCoAction> pruned = new LinkedHashSet<>();
+        for (int i = 0; i < Math.min(keep, order.length); i++) {
+            pruned.add(candidates[order[i]]);
+        }
+        return pruned;
+    }
+
+    /**
+     * The UCT kernel: returns the index of the candidate with the maximum UCT value, see {@link #calculateUCT(int, double)}.
+     * Candidates without playouts come first (exploring each action once before exploring an action twice). Ties are
+     * broken uniformly at random with a single random number.
+     */
+    private int selectByUCT() {
+        int count = actions.length;
+        int unvisited = 0;
+        for (int i = 0; i < count; i++) {
+            if (childPlayouts[i] == 0) {
+                unvisited++;
+            }
+        }
+        if (unvisited > 0) {
+            return nthIndexWithPlayouts(0, unvisited == 1 ? 0 : random.nextInt(unvisited));
+        }
+
+        // the same for all candidates, computed once per visit
+        double exploration = parameters.getExplorationConstant() * Math.sqrt(Math.log(this.playouts));
+        double maxValue = Double.NEGATIVE_INFINITY;
+        int ties = 0;
+        for (int i = 0; i < count; i++) {
+            if (isSolvedChild(i)) {
+                continue;
+            }
+            double value = calculateUCT(i, exploration);
+            if (value > maxValue) { //the current action has a larger value, i.e. start over with it
+                maxValue = value;
+                ties = 0;
+            }
+            if (value == maxValue) {
+                ties++;
+            }
+        }
+        if (ties == 0) {
+            return -1;
         }
-        return new ImmutablePair<>(this, selectedAction);
+        // the values are recomputed instead of stored, so the kernel does not allocate
+        int tie = ties == 1 ? 0 : random.nextInt(ties);
+        for (int i = 0; i < count; i++) {
+            if (!isSolvedChild(i) && calculateUCT(i, exploration) == maxValue && tie-- == 0) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("No candidate has the maximum UCT value");
+    }
+
+    private boolean isSolvedChild(int index) {
+        return childNodes[index] != null && childNodes[index].solvedRewards != null;
+    }
+
+    private int countUnsolved() {
+        int unsolved = 0;
+        for (int i = 0; i < childNodes.length; i++) {
+            if (!isSolvedChild(i)) {
+                unsolved++;
+            }
+        }
+        return unsolved;
+    }
+
+    /**
+     * Starts a sequential halving at this node: from now on, the selection here visits the candidates in the race in
+     * turn (the one with the fewest playouts first) instead of by UCT, and {@link #halveSurvivors()} drops the worse
+     * half of them after every round. The nodes below are still selected by UCT. Meant for the root, where only the
+     * single best action matters and not the reward collected while searching.
+     *
+     * @param simulateAllDiceOutcomes as in {@link #selection(boolean)}
+     * @return number of candidates in the race
+     */
+    public int startSequentialHalving(boolean simulateAllDiceOutcomes) {
+        if (actions == null || candidatesForAllOutcomes != simulateAllDiceOutcomes) {
+            computeCandidates(simulateAllDiceOutcomes);
+        }
+        survivorCount = actions.length;
+        survivors = new int[survivorCount];
+        for (int i = 0; i < survivorCount; i++) {
+            survivors[i] = i;
+        }
+        return survivorCount;
+    }
+
+    /**
+     * Ends a round of the sequential halving: keeps the better half of the candidates in the race (rounded up), by
+     * Q(s,a) of the acting player.
+     *
+     * @return number of candidates left in the race
+     */
+    public int halveSurvivors() {
+        if (survivors == null) {
+            throw new IllegalStateException("No sequential halving was started at this node");
+        }
+        // insertion sort, best first; equal values keep the order of the candidates
+        for (int i = 1; i < survivorCount; i++) {
+            int candidate = survivors[i];
+            double value = survivorValue(candidate);
+            int j = i - 1;
+            while (j >= 0 && survivorValue(survivors[j]) < value) {
+                survivors[j + 1] = survivors[j];
+                j--;
+            }
+            survivors[j + 1] = candidate;
+        }
+        survivorCount = (survivorCount + 1) / 2;
+        return survivorCount;
+    }
+
+    /**
+     * @return Q(s,a) of the acting player for a candidate, its proven reward if solved and -infinity if it was never
+     * visited
+     */
+    private double survivorValue(int index) {
+        if (isSolvedChild(index)) {
+            return childNodes[index].solvedRewards[actingPlayer];
+        }
+        return childPlayouts[index] == 0 ? Double.NEGATIVE_INFINITY : childValues[index] / childPlayouts[index];
+    }
+
+    private int selectLeastVisitedSurvivor() {
+        int fewest = Integer.MAX_VALUE;
+        int ties = 0;
+        for (int i = 0; i < survivorCount; i++) {
+            int playouts = childPlayouts[survivors[i]];
+            if (playouts < fewest) {
+                fewest = playouts;
+                ties = 0;
+            }
+            if (playouts == fewest) {
+                ties++;
+            }
+        }
+        int tie = ties == 1 ? 0 : random.nextInt(ties);
+        for (int i = 0; i < survivorCount; i++) {
+            if (childPlayouts[survivors[i]] == fewest && tie-- == 0) {
+                return survivors[i];
+            }
+        }
+        throw new IllegalStateException("No survivor has the fewest playouts");
+    }
+
+    /**
+     * Decides this node from its solved children, if they decide it:
+     * <ul>
+     *     <li>a die roll (all outcomes searched): once every outcome is solved, with the average of their rewards</li>
+     *     <li>a decision: once a solved child gives the acting player the best utility there is, or once all children
+     *     are solved, with the rewards of the child the acting player prefers (max^n; opponents break ties against the
+     *     player of the tree, the player of the tree in its favour)</li>
+     * </ul>
+     *
+     * @return whether this node is solved now
+     */
+    private boolean trySolve() {
+        if (childNodes == null || childNodes.length == 0) {
+            return false;
+        }
+        if (game.getCurrentPhase() == HeimlichAndCoPhase.DIE_ROLL_PHASE) {
+            // without all outcomes, a die roll child stands for a random outcome
+            if (!candidatesForAllOutcomes || countUnsolved() > 0) {
+                return false;
+            }
+            double[] average = new double[rewards.length];
+            for (MCTSNode child : childNodes) {
+                for (int player = 0; player < average.length; player++) {
+                    average[player] += child.solvedRewards[player] / childNodes.length;
+                }
+            }
+            solvedRewards = average;
+            return true;
+        }
+
+        double bestUtility = Math.max(parameters.getWinUtility(), Math.max(parameters.getDrawUtility(), parameters.getLossUtility()));
+        double[] best = null;
+        boolean allSolved = true;
+        for (int i = 0; i < childNodes.length; i++) {
+            if (!isSolvedChild(i)) {
+                allSolved = false;
+                continue;
+            }
+            double[] childRewards = childNodes[i].solvedRewards;
+            if (childRewards[actingPlayer] >= bestUtility) {
+                solvedRewards = childRewards;
+                return true;
+            }
+            if (best == null || isPreferred(childRewards, best)) {
+                best = childRewards;
+            }
+        }
+        if (!allSolved) {
+            return false;
+        }
+        solvedRewards = best;
+        return true;
+    }
+
+    private boolean isPreferred(double[] candidate, double[] current) {
+        if (candidate[actingPlayer] != current[actingPlayer]) {
+            return candidate[actingPlayer] > current[actingPlayer];
+        }
+        return actingPlayer == playerId ? candidate[playerId] > current[playerId] : candidate[playerId] < current[playerId];
+    }
+
+    /**
+     * Solves the ancestors of a node that was just solved, as far as its outcome decides them.
+     */
+    private static void propagateSolved(MCTSNode solved) {
+        for (MCTSNode node = solved.parent; node != null && node.solvedRewards == null && node.trySolve(); node = node.parent) {
+            // trySolve did the work
+        }
+    }
+
+    /**
+     * @return whether the outcome of this node is proven (see {@link #getSolvedRewards()})
+     */
+    public boolean isSolved() {
+        return solvedRewards != null;
+    }
+
+    /**
+     * @return the proven reward of every player, or null if the outcome of this node is not proven
+     */
+    public double[] getSolvedRewards() {
+        return solvedRewards == null ? null : solvedRewards.clone();
+    }
+
+    /**
+     * Rewards every player of a finished game by the agent assigned to it: the players whose agents have the highest
+     * score of the players' agents get the win utility if there is one of them and the draw utility if they share it,
+     * the others the loss utility (see {@link SearchParameters}).
+     *
+     * @return reward per player, in [0, 1]
+     */
+    static double[] outcome(HeimlichAndCo game, SearchParameters parameters) {
+        Map<Agent, Integer> scores = game.getBoard().getScores();
+        Map<Integer, Agent> playersToAgents = game.getPlayersToAgentsMap();
+        double[] rewards = new double[game.getNumberOfPlayers()];
+        int bestScore = Integer.MIN_VALUE;
+        int winners = 0;
+        for (int player = 0; player < rewards.length; player++) {
+            int score = scores.get(playersToAgents.get(player));
+            if (score > bestScore) {
+                bestScore = score;
+                winners = 0;
+            }
+            if (score == bestScore) {
+                winners++;
+            }
+        }
+        double winnerUtility = winners == 1 ? parameters.getWinUtility() : parameters.getDrawUtility();
+        for (int player = 0; player < rewards.length; player++) {
+            rewards[player] = scores.get(playersToAgents.get(player)) == bestScore ? winnerUtility : parameters.getLossUtility();
+        }
+        return rewards;
+    }
+
+    private int nthIndexWithPlayouts(int playouts, int n) {
+        for (int i = 0; i < childPlayouts.length; i++) {
+            if (childPlayouts[i] == playouts && n-- == 0) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Not enough candidates with " + playouts + " playouts");
     }
 
     /**
@@ -181,90 +718,230 @@ public class MCTSNode {
      * @return the action with the best expected result.
      */
     public ImmutablePair<MCTSNode, HeimlichAndCoAction> getBestChild() {
-        Set<HeimlichAndCoAction> possibleActions = children.keySet();
-        if (possibleActions.isEmpty()) {
+        if (children.isEmpty()) {
             throw new IllegalStateException("Could not find best child, because there are no children.");
         }
-        List<HeimlichAndCoAction> maximumValuedActions = getMaximumValuedActions(possibleActions, this.actionComparatorQsa);
-        HeimlichAndCoAction selectedAction = maximumValuedActions.get(random.nextInt(maximumValuedActions.size()));
-        return new ImmutablePair<>(this.children.get(selectedAction), selectedAction);
+        if (survivors != null) {
+            // the race decides, the eliminated candidates are not considered anymore
+            int best = survivors[0];
+            for (int i = 1; i < survivorCount; i++) {
+                if (survivorValue(survivors[i]) > survivorValue(best)) {
+                    best = survivors[i];
+                }
+            }
+            if (childNodes[best] != null) {
+                return new ImmutablePair<>(childNodes[best], decodeAction(actionCodes[best]));
+            }
+        }
+        List<Integer> bestCodes = new ArrayList<>();
+        double bestQsa = Double.NEGATIVE_INFINITY;
+        for (int slot = 0; slot < children.capacity(); slot++) {
+            int actionCode = children.keyAt(slot);
+            if (actionCode < 0) {
+                continue;
+            }
+            double qsa = calculateQsaOfChild(actionCode);
+            if (qsa > bestQsa) {
+                bestQsa = qsa;
+                bestCodes.clear();
+            }
+            if (qsa == bestQsa) {
+                bestCodes.add(actionCode);
+            }
+        }
+        int selectedCode = bestCodes.get(random.nextInt(bestCodes.size()));
+        // only here, at the root, the code is converted back into an action of the game
+        return new ImmutablePair<>(this.children.get(selectedCode), decodeAction(selectedCode));
+    }
+
+    /**
+     * Publishes the candidate with the best Q(s,a) so far for {@link #getBestActionSoFar()}: of the candidates still in
+     * the race if a sequential halving runs here, solved candidates by their proven reward. Only the thread that
+     * searches the tree may call this, it is the only one that reads the statistics.
+     */
+    public void publishBestActionSoFar() {
+        if (actions == null) {
+            return;
+        }
+        int count = survivors != null ? survivorCount : actions.length;
+        int best = -1;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for (int k = 0; k < count; k++) {
+            int i = survivors != null ? survivors[k] : k;
+            double value = survivorValue(i);
+            if (value > bestValue) {
+                bestValue = value;
+                best = i;
+            }
+        }
+        if (best >= 0) {
+            bestActionSoFar = actions[best];
+        }
+    }
+
+    /**
+     * The candidate the searching thread published last (see {@link #publishBestActionSoFar()}). Unlike
+     * {@link #getBestChild()}, this may be called while another thread is still searching the tree (e.g. by a watchdog
+     * at the deadline).
+     *
+     * @return the action, or null if none was published yet
+     */
+    public HeimlichAndCoAction getBestActionSoFar() {
+        return bestActionSoFar;
+    }
+
+    /**
+     * Returns the key of the child reached by an action: the canonical code of the action.
+     */
+    private int keyOf(HeimlichAndCoAction action) {
+        return getSymmetry().canonicalize(ActionCodec.encode(action));
+    }
+
+    private MoveSymmetry getSymmetry() {
+        if (symmetry == null) {
+            symmetry = MoveSymmetry.of(game);
+        }
+        return symmetry;
+    }
+
+    /**
+     * Converts a child key back into a possible action of this node's game.
+     */
+    private HeimlichAndCoAction decodeAction(int key) {
+        if (getSymmetry().isEmpty()) {
+            return ActionCodec.decode(key, game);
+        }
+        for (HeimlichAndCoAction action : ActionCodec.sortByCode(game.getPossibleActions())) {
+            if (keyOf(action) == key) {
+                return action;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Keeps one action of every group of agent moves that lead to equivalent positions (see {@link MoveSymmetry}).
+     *
+     * @param actions possible actions in the current game state
+     * @return the representatives, or the given actions if there are no equivalent moves
+     */
+    private Set<HeimlichAndCoAction> removeSymmetricActions(Set<HeimlichAndCoAction> actions) {
+        if (game.getCurrentPhase() != HeimlichAndCoPhase.AGENT_MOVE_PHASE || getSymmetry().isEmpty()) {
+            return actions;
+        }
+        IntObjectMap<HeimlichAndCoAction> representatives = new IntObjectMap<>(actions.size());
+        Set<HeimlichAndCoAction> reduced = new LinkedHashSet<>();
+        for (HeimlichAndCoAction action : actions) {
+            int key = keyOf(action);
+            if (!representatives.containsKey(key)) {
+                representatives.put(key, action);
+                reduced.add(action);
+            }
+        }
+        return reduced;
     }
 
     public HeimlichAndCo getGame() {
         return new HeimlichAndCo(game);
     }
 
+    public int getActionsOnEdge() {
+        return this.actionsOnEdge;
+    }
+
     public int getPlayouts() {
         return this.playouts;
     }
 
-    public double getWins() {
-        return this.wins;
+    int getDepth() {
+        return this.depth;
+    }
+
+    int getNumberOfPlayers() {
+        return this.rewards.length;
+    }
+
+    long getStateHash() {
+        if (stateHash == 0) {
+            stateHash = StateHasher.hashInformationSet(game, playerId);
+        }
+        return stateHash;
     }
 
     /**
-     * Calculates the UCT score of an action.
-     * In the case that no playout has been done yet for an action, the maximum Double value is returned. This is in line with exploring
-     * each state/action at least once before exploring a state/action twice.
-     * <p>
-     * Note: The action has to be a valid action in the current game state.
+     * Lets the nodes this tree expands from now on start with the playouts and rewards an earlier search found for
+     * their state (at most {@link #MAX_PRIOR_PLAYOUTS}), instead of with none. Set on the root; nodes expanded before
+     * keep their statistics.
      *
-     * @param action for which UCT score should be calculated
-     * @return UCT score of action
+     * @param valueCache summaries of earlier searches, or null to start every node without playouts
      */
-    private double calculateUCT(HeimlichAndCoAction action) {
-        if (action == null || !this.game.isValidAction(action)) {
-            throw new IllegalArgumentException("Action must not be null, and allowed in the current state");
+    public void setValueCache(ValueCache valueCache) {
+        this.valueCache = valueCache;
+    }
+
+    private void seedFromCache() {
+        ValueCache.Summary summary = valueCache.get(getStateHash());
+        if (summary == null || summary.getNumberOfPlayers() != rewards.length) {
+            return;
         }
-        if (this.children.isEmpty()) {
-            return Double.MAX_VALUE;
+        playouts = Math.min(summary.getPlayouts(), MAX_PRIOR_PLAYOUTS);
+        for (int player = 0; player < rewards.length; player++) {
+            rewards[player] = summary.getMean(player) * playouts;
         }
+        priorPlayouts = playouts;
+        priorRewards = rewards.clone();
+    }
 
-        if (this.children.containsKey(action)) {
-            MCTSNode child = this.children.get(action);
-            if (child.playouts == 0 || this.playouts == 0) { //this should never happen
-                throw new IllegalStateException("Illegal 0 value in calculateUCT");
-            }
-            double qSA;
-            if (this.game.getCurrentPlayer() == MCTSNode.playerId) {
-                qSA = ((double) child.wins / child.playouts);
-            } else {
-                //if the current player is not the player we are maximizing for, we have to 'invert' the wins, as the
-                //other players of course do not want 'our' player to win. Meaning, they of course don't take the action
-                //which benefits 'our' player
-                qSA = ((double) (child.playouts - child.wins) / child.playouts);
-            }
+    /**
+     * @return playouts this node was seeded with from the value cache (included in {@link #getPlayouts()}), 0 if none
+     */
+    int getPriorPlayouts() {
+        return priorPlayouts;
+    }
 
-            double nS = this.playouts;
-            double nSA = child.playouts;
-            return qSA + C * Math.sqrt(Math.log(nS) / nSA);
-        }
-        return Double.MAX_VALUE;
+    /**
+     * @return reward of a player this node was seeded with from the value cache (included in {@link #getReward}), 0
+     * if none
+     */
+    double getPriorReward(int player) {
+        return priorRewards == null ? 0 : priorRewards[player];
+    }
+
+    int getActingPlayer() {
+        return this.actingPlayer;
     }
 
     /**
-     * Gets the actions which have the maximum value according to some comparator. If multiple actions have the same
-     * (maximum) value, all of them will be contained in the returned list.
-     * This method runs in O(n) where n is the number of actions
+     * @return the expanded children by the key of their action (see {@link #keyOf}); not to be modified
+     */
+    IntObjectMap<MCTSNode> getChildren() {
+        return this.children;
+    }
+
+    public double getWins() {
+        return this.rewards[playerId];
+    }
+
+    /**
+     * @return sum of the rewards of a player achieved from this node
+     */
+    public double getReward(int player) {
+        return this.rewards[player];
+    }
+
+    /**
+     * Calculates the UCT score of a candidate that has been played out at least once: its Q(s,a) for the acting player
+     * of this node (max^n, every player chooses by its own reward) plus the exploration term.
      *
-     * @param actions    possible actions in the current game state
-     * @param comparator comparator which should be used to compare two actions (e.g. tree policy like UCT)
-     * @return a List of actions which have the maximum value when compared with the given Comparator
+     * @param index       of the candidate
+     * @param exploration exploration constant * sqrt(ln(playouts of this node))
+     * @return UCT score of the candidate
      */
-    private static List<HeimlichAndCoAction> getMaximumValuedActions(Set<HeimlichAndCoAction> actions, Comparator<HeimlichAndCoAction> comparator) {
-        List<HeimlichAndCoAction> selectedActions = new LinkedList<>();
-        for (HeimlichAndCoAction action : actions) {
-            if (selectedActions.isEmpty()) { //this is only true in the first iteration
-                selectedActions.add(action);
-            } else if (comparator.compare(selectedActions.get(0), action) == 0) { //the current action is equal
-                selectedActions.add(action);
-            } else if (comparator.compare(selectedActions.get(0), action) < 0) { //the current action has a larger value
-                //i.e. clear the list and add the current action to it
-                selectedActions = new LinkedList<>();
-                selectedActions.add(action);
-            }
-        }
-        return selectedActions;
+    private double calculateUCT(int index, double exploration) {
+        //childValues holds the summed reward of the player acting here, not of 'our' player, so every player picks the
+        //child that is best for itself (max^n)
+        double qSA = childValues[index] / childPlayouts[index];
+        return qSA + exploration * childInverseSqrtPlayouts[index];
     }
 
     private double evaluateActionHeuristic(HeimlichAndCoAction action, HeimlichAndCo game) {
@@ -276,7 +953,7 @@ public class MCTSNode {
 
             // 1. Highly prioritize scoring round triggers
             if (move.movesAgentsIntoRuins(boardBefore)) { //
-                score += 100.0;
+                score += parameters.getScoringMoveWeight();
             }
 
             // 2. Evaluate figurine progress by "peeking" at the resulting state
@@ -304,16 +981,16 @@ public class MCTSNode {
                 if (dist == 0) continue;
 
                 if (agent == myAgent) {
-                    score += dist * 5.0; // Moving our own agent is the priority
+                    score += dist * parameters.getOwnAgentWeight(); // Moving our own agent is the priority
                 } else if (idMap.containsValue(agent)) {
-                    score -= dist * 3.0; // Moving suspected opponents is penalized
+                    score -= dist * parameters.getOpponentAgentWeight(); // Moving suspected opponents is penalized
                 } else {
-                    score += dist * 1.0; // Moving dummy agents is a neutral filler strategy
+                    score += dist * parameters.getDummyAgentWeight(); // Moving dummy agents is a neutral filler strategy
                 }
             }
         } else if (action instanceof HeimlichAndCoCardAction) {
             // Playing a card is typically more strategic than a random die roll
-            score += 20.0;
+            score += parameters.getCardWeight();
         }
 
         return score;
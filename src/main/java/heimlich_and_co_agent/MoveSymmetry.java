@@ -0,0 +1,97 @@
+package heimlich_and_co_agent;
+
+import heimlich_and_co.HeimlichAndCo;
+import heimlich_and_co.enums.Agent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Groups agent moves that lead to strategically identical positions in a determinized game.
+ * <p>
+ * Agents that no player owns (in the determinization) and that stand on the same field with the same score are
+ * interchangeable: moving one of them k steps leads to the same position as moving another one k steps, up to the names
+ * of the agents, which nobody cares about. An agent move is canonicalized by sorting the steps within every such group,
+ * so all moves of an equivalence class get the same code.
+ */
+public class MoveSymmetry {
+
+    /**
+     * Symmetry without any interchangeable agents, canonicalization is the identity.
+     */
+    public static final MoveSymmetry NONE = new MoveSymmetry(new Agent[0][]);
+
+    private final Agent[][] groups;
+
+    private MoveSymmetry(Agent[][] groups) {
+        this.groups = groups;
+    }
+
+    /**
+     * Finds the groups of interchangeable agents in the given (determinized) game.
+     */
+    public static MoveSymmetry of(HeimlichAndCo game) {
+        Collection<Agent> ownedAgents = game.getPlayersToAgentsMap().values();
+        Map<Agent, Integer> positions = game.getBoard().getAgentsPositions();
+        Map<Agent, Integer> scores = game.getBoard().getScores();
+
+        List<List<Agent>> candidates = new ArrayList<>();
+        for (Agent agent : game.getBoard().getAgents()) {
+            if (ownedAgents.contains(agent)) {
+                continue;
+            }
+            List<Agent> group = null;
+            for (List<Agent> candidate : candidates) {
+                Agent other = candidate.get(0);
+                if (positions.get(other).equals(positions.get(agent)) && scores.get(other).equals(scores.get(agent))) {
+                    group = candidate;
+                    break;
+                }
+            }
+            if (group == null) {
+                group = new ArrayList<>();
+                candidates.add(group);
+            }
+            group.add(agent);
+        }
+
+        List<Agent[]> groups = new ArrayList<>();
+        for (List<Agent> candidate : candidates) {
+            if (candidate.size() > 1) {
+                groups.add(candidate.toArray(new Agent[0]));
+            }
+        }
+        return groups.isEmpty() ? NONE : new MoveSymmetry(groups.toArray(new Agent[0][]));
+    }
+
+    public boolean isEmpty() {
+        return groups.length == 0;
+    }
+
+    /**
+     * Returns the code of the representative of the equivalence class of an action. Codes of actions other than agent
+     * moves are returned unchanged.
+     *
+     * @param code action code as computed by {@link ActionCodec#encode}
+     * @return the canonical code
+     */
+    public int canonicalize(int code) {
+        if (groups.length == 0 || ActionCodec.getType(code) != ActionCodec.TYPE_AGENT_MOVE) {
+            return code;
+        }
+        for (Agent[] group : groups) {
+            int[] steps = new int[group.length];
+            for (int i = 0; i < group.length; i++) {
+                steps[i] = ActionCodec.getSteps(code, group[i]);
+            }
+            Arrays.sort(steps);
+            for (int i = 0; i < group.length; i++) {
+                code = ActionCodec.withSteps(code, group[i], steps[i]);
+            }
+        }
+        return code;
+    }
+}
@@ -0,0 +1,115 @@
+package heimlich_and_co_agent;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+/**
+ * Read-only opening book that maps canonical state hashes (see {@link StateHasher}) to action codes (see
+ * {@link ActionCodec}).
+ * <p>
+ * The book file is memory-mapped, so opening it is instant and lookups do not copy it into the heap.
+ * File layout (big endian): magic, version, number of entries, followed by the entries sorted by hash, each consisting
+ * of the hash (long) and the action code (int).
+ */
+public class OpeningBook {
+
+    private static final int MAGIC = 0x44474F42; // "DGOB"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 3 * Integer.BYTES;
+    private static final int ENTRY_SIZE = Long.BYTES + Integer.BYTES;
+
+    /**
+     * Value returned by {@link #lookup(long)} when the book does not contain the state.
+     */
+    public static final int NOT_FOUND = -1;
+
+    private final MappedByteBuffer buffer;
+    private final int size;
+
+    private OpeningBook(MappedByteBuffer buffer) {
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(Integer.BYTES) != VERSION) {
+            throw new IllegalArgumentException("Not an opening book of version " + VERSION);
+        }
+        this.buffer = buffer;
+        this.size = buffer.getInt(2 * Integer.BYTES);
+        if ((long) HEADER_SIZE + (long) size * ENTRY_SIZE > buffer.capacity()) {
+            throw new IllegalArgumentException("Opening book is truncated");
+        }
+    }
+
+    /**
+     * Memory-maps the opening book at the given path.
+     *
+     * @param path of the book file
+     * @return the opening book
+     * @throws IOException if the file cannot be read
+     */
+    public static OpeningBook open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new OpeningBook(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Looks up the book move for a state. Uses absolute reads only, so it is safe to call from multiple threads.
+     *
+     * @param stateHash hash of the state as computed by {@link StateHasher#hash}
+     * @return the action code of the book move or {@link #NOT_FOUND}
+     */
+    public int lookup(long stateHash) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midHash = buffer.getLong(HEADER_SIZE + mid * ENTRY_SIZE);
+            if (midHash < stateHash) {
+                low = mid + 1;
+            } else if (midHash > stateHash) {
+                high = mid - 1;
+            } else {
+                return buffer.getInt(HEADER_SIZE + mid * ENTRY_SIZE + Long.BYTES);
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Writes a book in the format read by {@link #open(Path)}.
+     *
+     * @param entries state hashes mapped to action codes; must be sorted by hash (e.g. a TreeMap)
+     * @param out     stream to write to
+     * @throws IOException if writing fails
+     */
+    public static void write(Map<Long, Integer> entries, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(entries.size());
+        for (Map.Entry<Long, Integer> entry : entries.entrySet()) {
+            data.writeLong(entry.getKey());
+            data.writeInt(entry.getValue());
+        }
+        data.flush();
+    }
+
+    /**
+     * Convenience method to write a book to a file.
+     */
+    public static void write(Map<Long, Integer> entries, Path path) throws IOException {
+        try (OutputStream out = Files.newOutputStream(path)) {
+            write(entries, new BufferedOutputStream(out));
+        }
+    }
+}
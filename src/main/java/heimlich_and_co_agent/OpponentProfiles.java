@@ -0,0 +1,222 @@
+package heimlich_and_co_agent;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * How opponents behaved in earlier games, stored per opponent name: how concentrated their movement is, how often they
+ * burst (move a single agent by 4 or more points) and how often they play a card when they hold one. The agent loads
+ * the profiles of named opponents as priors of its identity inference at the start of a game (see
+ * {@link IdentityTracker#setPrior}) and adds what it observed at the end of the game.
+ * <p>
+ * The profiles are sums over all observed turns and card decisions, so merging a game is exact and the order of the
+ * games does not matter. File layout (big endian): magic and version, the number of profiles, then per profile its
+ * name (modified UTF-8), games, turns, concentration times turns, burst turns, card decisions and cards played.
+ * Updates lock the file, so several processes can share it.
+ */
+public final class OpponentProfiles {
+
+    /**
+     * Name of the profile for opponents whose names are not known; it pools the behaviour of all of them.
+     */
+    public static final String UNKNOWN = "unknown";
+
+    private static final int MAGIC = 0x44474F50; // "DGOP"
+    private static final int VERSION = 1;
+
+    private final Map<String, Profile> profiles;
+
+    private OpponentProfiles(Map<String, Profile> profiles) {
+        this.profiles = profiles;
+    }
+
+    /**
+     * Reads the profiles, a missing file is read as no profiles.
+     *
+     * @throws IOException if the file cannot be read or is not a profile store
+     */
+    public static OpponentProfiles read(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return new OpponentProfiles(Collections.emptyMap());
+        }
+        return new OpponentProfiles(decode(Files.readAllBytes(path), path));
+    }
+
+    /**
+     * @return the profile of the opponent, or null if it was never observed
+     */
+    public Profile get(String name) {
+        return profiles.get(name);
+    }
+
+    public int size() {
+        return profiles.size();
+    }
+
+    /**
+     * Adds the observations of a game to the profiles in the file, creating it if it does not exist yet.
+     *
+     * @param observations observed behaviour per opponent name
+     * @throws IOException if the file cannot be read or written
+     */
+    public static void record(Path path, Map<String, Profile> observations) throws IOException {
+        // the file lock is held per JVM, so the threads of a JVM take turns first
+        synchronized (OpponentProfiles.class) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                FileLock lock = channel.lock();
+                try {
+                    ByteBuffer content = ByteBuffer.allocate((int) channel.size());
+                    while (content.hasRemaining()) {
+                        if (channel.read(content) < 0) {
+                            throw new IOException("Could not read " + path);
+                        }
+                    }
+                    Map<String, Profile> profiles = content.capacity() == 0 ? new TreeMap<>() : decode(content.array(), path);
+                    for (Map.Entry<String, Profile> entry : observations.entrySet()) {
+                        profiles.merge(entry.getKey(), entry.getValue(), Profile::plus);
+                    }
+
+                    ByteBuffer encoded = ByteBuffer.wrap(encode(profiles));
+                    channel.truncate(0);
+                    channel.position(0);
+                    while (encoded.hasRemaining()) {
+                        channel.write(encoded);
+                    }
+                } finally {
+                    lock.release();
+                }
+            }
+        }
+    }
+
+    private static Map<String, Profile> decode(byte[] bytes, Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not an opponent profile store: " + path);
+            }
+            Map<String, Profile> profiles = new TreeMap<>();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                profiles.put(in.readUTF(), Profile.read(in));
+            }
+            return profiles;
+        }
+    }
+
+    private static byte[] encode(Map<String, Profile> profiles) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(profiles.size());
+            for (Map.Entry<String, Profile> entry : profiles.entrySet()) {
+                out.writeUTF(entry.getKey());
+                entry.getValue().write(out);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Behaviour of an opponent, summed over the games it was observed in. Immutable.
+     */
+    public static final class Profile {
+        private final int games;
+        private final int turns;
+        private final double concentrationTurns;
+        private final int burstTurns;
+        private final int cardDecisions;
+        private final int cardsPlayed;
+
+        private Profile(int games, int turns, double concentrationTurns, int burstTurns, int cardDecisions, int cardsPlayed) {
+            this.games = games;
+            this.turns = turns;
+            this.concentrationTurns = concentrationTurns;
+            this.burstTurns = burstTurns;
+            this.cardDecisions = cardDecisions;
+            this.cardsPlayed = cardsPlayed;
+        }
+
+        /**
+         * The behaviour of an opponent in a single game.
+         *
+         * @param turns         turns in which the opponent moved agents
+         * @param concentration concentration of its movement over the game (see
+         *                      {@link DiceTracker#getObservedMovementConcentration})
+         * @param burstTurns    turns in which it moved a single agent by 4 or more points
+         * @param cardDecisions card phases in which it held a card
+         * @param cardsPlayed   cards it played
+         */
+        public static Profile ofGame(int turns, double concentration, int burstTurns, int cardDecisions, int cardsPlayed) {
+            return new Profile(1, turns, concentration * turns, burstTurns, cardDecisions, cardsPlayed);
+        }
+
+        /**
+         * Reads a profile written by {@link #write}.
+         */
+        static Profile read(DataInputStream in) throws IOException {
+            return new Profile(in.readInt(), in.readInt(), in.readDouble(), in.readInt(), in.readInt(), in.readInt());
+        }
+
+        /**
+         * Writes the sums of the profile: games, turns, concentration times turns, burst turns, card decisions and cards
+         * played.
+         */
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(games);
+            out.writeInt(turns);
+            out.writeDouble(concentrationTurns);
+            out.writeInt(burstTurns);
+            out.writeInt(cardDecisions);
+            out.writeInt(cardsPlayed);
+        }
+
+        Profile plus(Profile other) {
+            return new Profile(games + other.games, turns + other.turns, concentrationTurns + other.concentrationTurns,
+                    burstTurns + other.burstTurns, cardDecisions + other.cardDecisions, cardsPlayed + other.cardsPlayed);
+        }
+
+        public int getGames() {
+            return games;
+        }
+
+        /**
+         * @return average movement concentration per turn, NaN if no turn was observed
+         */
+        public double getConcentration() {
+            return turns == 0 ? Double.NaN : concentrationTurns / turns;
+        }
+
+        /**
+         * @return share of the turns that were bursts, NaN if no turn was observed
+         */
+        public double getBurstRate() {
+            return turns == 0 ? Double.NaN : (double) burstTurns / turns;
+        }
+
+        /**
+         * @return share of the card decisions in which a card was played, NaN if no decision was observed
+         */
+        public double getCardPlayRate() {
+            return cardDecisions == 0 ? Double.NaN : (double) cardsPlayed / cardDecisions;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d games, concentration %.2f, burst rate %.2f, card play rate %.2f", games,
+                    getConcentration(), getBurstRate(), getCardPlayRate());
+        }
+    }
+}
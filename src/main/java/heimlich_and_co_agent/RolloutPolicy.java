@@ -0,0 +1,162 @@
+package heimlich_and_co_agent;
+
+import heimlich_and_co.HeimlichAndCo;
+import heimlich_and_co.actions.HeimlichAndCoAction;
+import heimlich_and_co.actions.HeimlichAndCoCardAction;
+import heimlich_and_co.enums.Agent;
+import heimlich_and_co.enums.HeimlichAndCoPhase;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Chooses the actions during playouts.
+ * <p>
+ * Opponents are modelled as players who spend their points on their own (hidden) agent: when an opponent moves agents,
+ * with a probability equal to its bias a few candidate moves are drawn and the one moving the agent assigned to that
+ * opponent in the current determinization the furthest is played; otherwise (and for all other decisions) a uniformly
+ * random action is played. The bias of a player is how concentrated its movement has been so far (see
+ * {@link DiceTracker#getMovementConcentration(int)}).
+ * <p>
+ * When an opponent holds cards, it plays one with its card play rate (see {@link CardTracker#getCardPlayRate(int)})
+ * and skips otherwise; opponents without a known rate choose uniformly among all card actions.
+ * <p>
+ * Instances are immutable and can be shared by playouts running in parallel.
+ */
+public class RolloutPolicy {
+
+    /**
+     * Number of candidate moves that are compared when an opponent plays for its own agent.
+     */
+    private static final int CANDIDATES = 4;
+
+    private final int playerId;
+    private final double[] bias;
+    // probability per player to play a card instead of skipping, NaN if unknown
+    private final double[] cardPlayRate;
+    // whether the actions are ordered by their codes before drawing, see inCanonicalOrder()
+    private final boolean canonicalOrder;
+
+    /**
+     * @param playerId player we are searching for, always plays uniformly at random in the playouts
+     * @param bias     probability per player to play for its own agent
+     */
+    public RolloutPolicy(int playerId, double[] bias) {
+        this(playerId, bias, unknownRates(bias.length), false);
+    }
+
+    /**
+     * @param playerId     player we are searching for, always plays uniformly at random in the playouts
+     * @param bias         probability per player to play for its own agent
+     * @param cardPlayRate probability per player to play a card when it has one, NaN if unknown
+     */
+    public RolloutPolicy(int playerId, double[] bias, double[] cardPlayRate) {
+        this(playerId, bias, cardPlayRate, false);
+    }
+
+    private RolloutPolicy(int playerId, double[] bias, double[] cardPlayRate, boolean canonicalOrder) {
+        this.playerId = playerId;
+        this.bias = bias.clone();
+        this.cardPlayRate = cardPlayRate.clone();
+        this.canonicalOrder = canonicalOrder;
+    }
+
+    private static double[] unknownRates(int numberOfPlayers) {
+        double[] rates = new double[numberOfPlayers];
+        Arrays.fill(rates, Double.NaN);
+        return rates;
+    }
+
+    /**
+     * Creates a policy with the bias of every player taken from its movement history.
+     */
+    public static RolloutPolicy fromDiceTracker(int playerId, int numberOfPlayers, DiceTracker diceTracker) {
+        double[] bias = new double[numberOfPlayers];
+        for (int i = 0; i < numberOfPlayers; i++) {
+            bias[i] = diceTracker.getMovementConcentration(i);
+        }
+        return new RolloutPolicy(playerId, bias);
+    }
+
+    /**
+     * Creates a policy with the bias of every player taken from its movement history and its card play rate from the
+     * card tracker.
+     */
+    public static RolloutPolicy fromTrackers(int playerId, int numberOfPlayers, DiceTracker diceTracker, CardTracker cardTracker) {
+        double[] bias = new double[numberOfPlayers];
+        double[] cardPlayRate = new double[numberOfPlayers];
+        for (int i = 0; i < numberOfPlayers; i++) {
+            bias[i] = diceTracker.getMovementConcentration(i);
+            cardPlayRate[i] = cardTracker.getCardPlayRate(i);
+        }
+        return new RolloutPolicy(playerId, bias, cardPlayRate);
+    }
+
+    /**
+     * Returns this policy drawing from the actions ordered by their codes (see {@link ActionCodec#sortByCode}), so
+     * playouts with the same random numbers are the same in every run. Costs a sort per step.
+     */
+    public RolloutPolicy inCanonicalOrder() {
+        return new RolloutPolicy(playerId, bias, cardPlayRate, true);
+    }
+
+    /**
+     * Selects the next action of a playout.
+     *
+     * @param game            current (determinized) state of the playout
+     * @param possibleActions actions possible in the state, must not be empty
+     * @param random          random source of the calling thread
+     * @return the action to play
+     */
+    public HeimlichAndCoAction selectAction(HeimlichAndCo game, Set<HeimlichAndCoAction> possibleActions, Random random) {
+        HeimlichAndCoAction[] actions = canonicalOrder
+                ? ActionCodec.sortByCode(possibleActions)
+                : possibleActions.toArray(new HeimlichAndCoAction[0]);
+        int player = game.getCurrentPlayer();
+        if (player != playerId && player >= 0 && player < cardPlayRate.length && actions.length > 1
+                && game.getCurrentPhase() == HeimlichAndCoPhase.CARD_PLAY_PHASE && !Double.isNaN(cardPlayRate[player])) {
+            return selectCardAction(actions, cardPlayRate[player], random);
+        }
+        if (player == playerId || player < 0 || player >= bias.length || actions.length == 1
+                || game.getCurrentPhase() != HeimlichAndCoPhase.AGENT_MOVE_PHASE || random.nextDouble() >= bias[player]) {
+            return actions[random.nextInt(actions.length)];
+        }
+        Agent ownAgent = game.getPlayersToAgentsMap().get(player);
+        HeimlichAndCoAction bestAction = actions[random.nextInt(actions.length)];
+        int bestSteps = ActionCodec.getSteps(ActionCodec.encode(bestAction), ownAgent);
+        for (int i = 1; i < CANDIDATES; i++) {
+            HeimlichAndCoAction candidate = actions[random.nextInt(actions.length)];
+            int steps = ActionCodec.getSteps(ActionCodec.encode(candidate), ownAgent);
+            if (steps > bestSteps) {
+                bestSteps = steps;
+                bestAction = candidate;
+            }
+        }
+        return bestAction;
+    }
+
+    /**
+     * Skips with the probability not to play a card, otherwise plays one of the card actions uniformly at random.
+     */
+    private static HeimlichAndCoAction selectCardAction(HeimlichAndCoAction[] actions, double playRate, Random random) {
+        HeimlichAndCoAction skip = HeimlichAndCoCardAction.getSkipCardAction();
+        boolean play = random.nextDouble() < playRate;
+        int skipIndex = -1;
+        for (int i = 0; i < actions.length; i++) {
+            if (actions[i].equals(skip)) {
+                skipIndex = i;
+                break;
+            }
+        }
+        if (skipIndex < 0) {
+            return actions[random.nextInt(actions.length)];
+        }
+        if (!play) {
+            return actions[skipIndex];
+        }
+        // draw among the other actions by leaving out the skip
+        int selected = random.nextInt(actions.length - 1);
+        return actions[selected < skipIndex ? selected : selected + 1];
+    }
+}
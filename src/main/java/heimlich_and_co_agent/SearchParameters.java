@@ -0,0 +1,226 @@
+package heimlich_and_co_agent;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Properties;
+
+/**
+ * Tunable constants of the search, e.g. as found by heimlich_and_co_tools.ParameterTuner.
+ * <p>
+ * A profile is a properties file that maps the names of the parameters to their values; parameters that are missing
+ * keep their default value. Instances are immutable.
+ */
+public final class SearchParameters {
+
+    public static final String EXPLORATION_CONSTANT = "explorationConstant";
+    public static final String TERMINATION_DEPTH = "terminationDepth";
+    public static final String PRUNE_THRESHOLD = "pruneThreshold";
+    public static final String PRUNE_KEEP = "pruneKeep";
+    public static final String SCORING_MOVE_WEIGHT = "scoringMoveWeight";
+    public static final String OWN_AGENT_WEIGHT = "ownAgentWeight";
+    public static final String OPPONENT_AGENT_WEIGHT = "opponentAgentWeight";
+    public static final String DUMMY_AGENT_WEIGHT = "dummyAgentWeight";
+    public static final String CARD_WEIGHT = "cardWeight";
+    public static final String OPENING_ROLLS = "openingRolls";
+    public static final String WIN_UTILITY = "winUtility";
+    public static final String DRAW_UTILITY = "drawUtility";
+    public static final String LOSS_UTILITY = "lossUtility";
+
+    // the getters read the values by their index in NAMES
+    private static final String[] NAMES = {
+            EXPLORATION_CONSTANT, TERMINATION_DEPTH, PRUNE_THRESHOLD, PRUNE_KEEP, SCORING_MOVE_WEIGHT,
+            OWN_AGENT_WEIGHT, OPPONENT_AGENT_WEIGHT, DUMMY_AGENT_WEIGHT, CARD_WEIGHT, OPENING_ROLLS,
+            WIN_UTILITY, DRAW_UTILITY, LOSS_UTILITY
+    };
+    private static final double[] DEFAULTS = {
+            Math.sqrt(2), 64, 20, 10, 100.0,
+            5.0, 3.0, 1.0, 20.0, 10,
+            1.0, 0.5, 0.0
+    };
+
+    private static final SearchParameters DEFAULT = new SearchParameters(DEFAULTS);
+
+    private final double[] values;
+
+    private SearchParameters(double[] values) {
+        this.values = values;
+    }
+
+    /**
+     * @return the parameters the agent was designed with
+     */
+    public static SearchParameters defaults() {
+        return DEFAULT;
+    }
+
+    /**
+     * Reads a profile.
+     *
+     * @param path of the properties file
+     * @return the parameters of the profile
+     * @throws IOException              if the file cannot be read
+     * @throws IllegalArgumentException if the profile contains unknown parameters or values that are not numbers
+     */
+    public static SearchParameters load(Path path) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(path)) {
+            properties.load(in);
+        }
+        SearchParameters parameters = DEFAULT;
+        for (String name : properties.stringPropertyNames()) {
+            parameters = parameters.with(name, Double.parseDouble(properties.getProperty(name).trim()));
+        }
+        return parameters;
+    }
+
+    /**
+     * Writes the parameters as a profile that can be read by {@link #load(Path)}.
+     */
+    public void store(Path path, String comment) throws IOException {
+        Properties properties = new Properties();
+        for (int i = 0; i < NAMES.length; i++) {
+            properties.setProperty(NAMES[i], Double.toString(values[i]));
+        }
+        try (OutputStream out = Files.newOutputStream(path)) {
+            properties.store(out, comment);
+        }
+    }
+
+    /**
+     * @return the names of all parameters
+     */
+    public static String[] names() {
+        return NAMES.clone();
+    }
+
+    public double get(String name) {
+        return values[indexOf(name)];
+    }
+
+    /**
+     * @return a copy of these parameters with one value changed
+     */
+    public SearchParameters with(String name, double value) {
+        double[] changed = values.clone();
+        changed[indexOf(name)] = value;
+        return new SearchParameters(changed);
+    }
+
+    /**
+     * This constant balances between exploration and exploitation in UCT.
+     */
+    public double getExplorationConstant() {
+        return values[0];
+    }
+
+    /**
+     * Depth after which random playouts are stopped and evaluated; -1 plays out till the game ends.
+     */
+    public int getTerminationDepth() {
+        return (int) Math.round(values[1]);
+    }
+
+    /**
+     * Number of agent moves above which the moves of a node are pruned by the heuristic.
+     */
+    public int getPruneThreshold() {
+        return (int) Math.round(values[2]);
+    }
+
+    /**
+     * Number of agent moves kept when pruning.
+     */
+    public int getPruneKeep() {
+        return Math.max(1, (int) Math.round(values[3]));
+    }
+
+    /**
+     * Heuristic bonus of agent moves that move agents into the ruins (trigger a scoring round).
+     */
+    public double getScoringMoveWeight() {
+        return values[4];
+    }
+
+    /**
+     * Heuristic bonus per field our own agent is moved.
+     */
+    public double getOwnAgentWeight() {
+        return values[5];
+    }
+
+    /**
+     * Heuristic penalty per field an agent of another player is moved.
+     */
+    public double getOpponentAgentWeight() {
+        return values[6];
+    }
+
+    /**
+     * Heuristic bonus per field an agent nobody owns is moved.
+     */
+    public double getDummyAgentWeight() {
+        return values[7];
+    }
+
+    /**
+     * Heuristic bonus of playing a card.
+     */
+    public double getCardWeight() {
+        return values[8];
+    }
+
+    /**
+     * Number of rolls in the game until which the opening book and the MCTS Agent are used instead of our own search.
+     */
+    public int getOpeningRolls() {
+        return (int) Math.round(values[9]);
+    }
+
+    /**
+     * Reward of a player whose agent alone has the highest score of the players' agents at the end of a playout, in
+     * [0, 1].
+     */
+    public double getWinUtility() {
+        return clampUtility(values[10]);
+    }
+
+    /**
+     * Reward of a player whose agent shares the highest score of the players' agents with another player's agent, in
+     * [0, 1]. The README values a draw over a loss.
+     */
+    public double getDrawUtility() {
+        return clampUtility(values[11]);
+    }
+
+    /**
+     * Reward of the other players at the end of a playout, in [0, 1].
+     */
+    public double getLossUtility() {
+        return clampUtility(values[12]);
+    }
+
+    private static double clampUtility(double utility) {
+        return Math.max(0.0, Math.min(1.0, utility));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < NAMES.length; i++) {
+            builder.append(i == 0 ? "" : ", ").append(NAMES[i]).append('=').append(values[i]);
+        }
+        return builder.toString();
+    }
+
+    private static int indexOf(String name) {
+        int index = Arrays.asList(NAMES).indexOf(name);
+        if (index < 0) {
+            throw new IllegalArgumentException("Unknown search parameter: " + name);
+        }
+        return index;
+    }
+}
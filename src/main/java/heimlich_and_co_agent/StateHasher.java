@@ -0,0 +1,159 @@
+package heimlich_and_co_agent;
+
+import heimlich_and_co.HeimlichAndCo;
+import heimlich_and_co.HeimlichAndCoBoard;
+import heimlich_and_co.cards.HeimlichAndCoCard;
+import heimlich_and_co.enums.Agent;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Computes a canonical 64 bit (Zobrist) hash of a game state.
+ * <p>
+ * The hash covers everything that influences the decision of the current player: agent positions, scores, safe
+ * position, phase, current player, last die roll, the known player to agent assignments and the cards on the hands.
+ * The action history is not part of the hash, so transpositions map to the same value.
+ * <p>
+ * The random tables are generated from a fixed seed, so hashes are stable across JVMs and can be written to disk.
+ */
+public final class StateHasher {
+
+    private static final int NUM_AGENTS = 7;
+    private static final int MAX_PLAYERS = 7;
+    private static final int MAX_FIELDS = 12;
+    private static final int SCORE_SLOTS = 64;
+    private static final int SCORE_OFFSET = 8;
+    private static final int DIE_SLOTS = 16;
+    private static final int MAX_CARDS_OF_KIND = 4;
+    private static final int MAX_HAND_SIZE = 16;
+
+    private static final long[][] POSITION = new long[NUM_AGENTS][MAX_FIELDS];
+    private static final long[][] SCORE = new long[NUM_AGENTS][SCORE_SLOTS];
+    private static final long[] SAFE = new long[MAX_FIELDS];
+    private static final long[] PHASE = new long[4];
+    private static final long[] CURRENT_PLAYER = new long[MAX_PLAYERS];
+    private static final long[] DIE = new long[DIE_SLOTS];
+    private static final long[] NUMBER_OF_PLAYERS = new long[MAX_PLAYERS + 1];
+    private static final long[] SKIPPED = new long[MAX_PLAYERS + 1];
+    private static final long[][] PLAYER_AGENT = new long[MAX_PLAYERS][NUM_AGENTS];
+    private static final long[][][] HAND = new long[MAX_PLAYERS][ActionCodec.NUMBER_OF_CARD_KINDS][MAX_CARDS_OF_KIND + 1];
+    private static final long WITH_CARDS;
+    private static final long[][] HAND_SIZE = new long[MAX_PLAYERS][MAX_HAND_SIZE + 1];
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x5EED_6072_BAC4L);
+        fill(POSITION, random);
+        fill(SCORE, random);
+        fill(SAFE, random);
+        fill(PHASE, random);
+        fill(CURRENT_PLAYER, random);
+        fill(DIE, random);
+        fill(NUMBER_OF_PLAYERS, random);
+        fill(SKIPPED, random);
+        fill(PLAYER_AGENT, random);
+        for (long[][] table : HAND) {
+            fill(table, random);
+        }
+        WITH_CARDS = random.nextLong();
+        // drawn last, so the tables above (and the hashes in the opening book) stay the same
+        fill(HAND_SIZE, random);
+    }
+
+    private StateHasher() {
+    }
+
+    /**
+     * Hashes the given game state.
+     *
+     * @param game to hash
+     * @return 64 bit hash of the state
+     */
+    public static long hash(HeimlichAndCo game) {
+        return hash(game, -1);
+    }
+
+    /**
+     * Hashes what a player knows of the given game state: like {@link #hash(HeimlichAndCo)}, but of the player to agent
+     * assignments and the hands only those of the player, and the number of cards of the other players. All
+     * determinizations of a state the player cannot tell apart get the same hash.
+     *
+     * @param game     to hash
+     * @param playerId player whose knowledge is hashed
+     * @return 64 bit hash of the information set
+     */
+    public static long hashInformationSet(HeimlichAndCo game, int playerId) {
+        return hash(game, playerId);
+    }
+
+    /**
+     * @param observer player whose knowledge is hashed, -1 to hash everything
+     */
+    private static long hash(HeimlichAndCo game, int observer) {
+        HeimlichAndCoBoard board = game.getBoard();
+        long hash = NUMBER_OF_PLAYERS[game.getNumberOfPlayers()];
+
+        Map<Agent, Integer> positions = board.getAgentsPositions();
+        Map<Agent, Integer> scores = board.getScores();
+        for (Agent agent : board.getAgents()) {
+            int agentIndex = agent.ordinal();
+            hash ^= POSITION[agentIndex][positions.get(agent)];
+            hash ^= SCORE[agentIndex][clamp(scores.get(agent) + SCORE_OFFSET, SCORE_SLOTS)];
+        }
+        hash ^= SAFE[board.getSafePosition()];
+        hash ^= PHASE[game.getCurrentPhase().ordinal()];
+        hash ^= CURRENT_PLAYER[game.getCurrentPlayer()];
+        hash ^= DIE[clamp(board.getLastDieRoll(), DIE_SLOTS)];
+
+        for (Map.Entry<Integer, Agent> entry : game.getPlayersToAgentsMap().entrySet()) {
+            if (observer >= 0 && entry.getKey() != observer) {
+                continue;
+            }
+            hash ^= PLAYER_AGENT[entry.getKey()][entry.getValue().ordinal()];
+        }
+
+        if (game.isWithCards()) {
+            hash ^= WITH_CARDS;
+            hash ^= SKIPPED[clamp(game.getPlayersSkippedInARowDuringCardPhase(), SKIPPED.length)];
+            int[] counts = new int[ActionCodec.NUMBER_OF_CARD_KINDS];
+            for (Map.Entry<Integer, List<HeimlichAndCoCard>> entry : game.getCards().entrySet()) {
+                if (entry.getValue() == null || entry.getValue().isEmpty()) {
+                    continue;
+                }
+                if (observer >= 0 && entry.getKey() != observer) {
+                    hash ^= HAND_SIZE[entry.getKey()][Math.min(entry.getValue().size(), MAX_HAND_SIZE)];
+                    continue;
+                }
+                Arrays.fill(counts, 0);
+                for (HeimlichAndCoCard card : entry.getValue()) {
+                    counts[ActionCodec.getCardKind(card)]++;
+                }
+                long[][] hand = HAND[entry.getKey()];
+                for (int kind = 0; kind < counts.length; kind++) {
+                    if (counts[kind] > 0) {
+                        hash ^= hand[kind][Math.min(counts[kind], MAX_CARDS_OF_KIND)];
+                    }
+                }
+            }
+        }
+        return hash;
+    }
+
+    private static int clamp(int value, int slots) {
+        return Math.max(0, Math.min(slots - 1, value));
+    }
+
+    private static void fill(long[] table, SplittableRandom random) {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = random.nextLong();
+        }
+    }
+
+    private static void fill(long[][] table, SplittableRandom random) {
+        for (long[] row : table) {
+            fill(row, random);
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package heimlich_and_co_agent;
+
+import at.ac.tuwien.ifs.sge.game.ActionRecord;
+import heimlich_and_co.HeimlichAndCo;
+import heimlich_and_co.HeimlichAndCoBoard;
+import heimlich_and_co.actions.HeimlichAndCoAction;
+import heimlich_and_co.actions.HeimlichAndCoDieRollAction;
+import heimlich_and_co.cards.HeimlichAndCoCard;
+import heimlich_and_co.enums.Agent;
+import heimlich_and_co.enums.HeimlichAndCoPhase;
+import heimlich_and_co.util.CardStack;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * The state a traced decision starts from (see {@link DecisionTrace}): the game as the agent saw it and the priors its
+ * trackers got from the opponent profiles.
+ * <p>
+ * The trackers themselves are not written: they only depend on the action records of the game and the priors, so the
+ * replay rebuilds them (see {@link DetectiveGoetzbach#replay}) and new fields of the trackers do not change the format.
+ * The game is written field by field through the public API of the engine; only its phase and the player of the
+ * current turn have no setters and are restored via reflection, like {@link ActionCodec} reads the actions. Cards are
+ * written as their kinds and actions as their codes (see {@link ActionCodec}), so reading a snapshot only ever creates
+ * engine objects, whatever the file contains.
+ * <p>
+ * Layout (big endian): version, the game (players, whether it is played with cards, current player, turn player, phase,
+ * skipped card phases in a row, whether custom die rolls are allowed, disqualified players), the board (per agent its
+ * ordinal, position, score and whether it triggered scoring, then the safe position and the last die roll), the agent
+ * of every player, the hands (-1 if the game has no cards) and the card stack (-1 if there is none), the action records
+ * (player, code and rolled face) and the prior profile of every player (a flag, then the profile).
+ */
+final class StateSnapshot {
+
+    private static final int VERSION = 1;
+
+    /**
+     * Upper bound of the counts in a snapshot, so a corrupt file is rejected instead of allocating huge lists.
+     */
+    private static final int MAX_COUNT = 1 << 20;
+
+    private static final Field PHASE = accessibleField("phase");
+    private static final Field CURRENT_TURN_PLAYER = accessibleField("currentTurnPlayer");
+
+    private final HeimlichAndCo game;
+    private final OpponentProfiles.Profile[] priors;
+
+    /**
+     * @param game   game before the decision; it is not copied, so it should not change before it is written
+     * @param priors profile every player's trackers were given as prior, null for players without one
+     */
+    StateSnapshot(HeimlichAndCo game, OpponentProfiles.Profile[] priors) {
+        this.game = game;
+        this.priors = priors.clone();
+    }
+
+    /**
+     * Reads a snapshot written by {@link #write}.
+     *
+     * @throws IOException if the stream cannot be read or does not hold a valid state
+     */
+    static StateSnapshot read(DataInputStream in) throws IOException {
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported state version " + version);
+        }
+        try {
+            HeimlichAndCo game = readGame(in);
+            OpponentProfiles.Profile[] priors = new OpponentProfiles.Profile[game.getNumberOfPlayers()];
+            for (int player = 0; player < priors.length; player++) {
+                priors[player] = in.readBoolean() ? OpponentProfiles.Profile.read(in) : null;
+            }
+            return new StateSnapshot(game, priors);
+        } catch (IllegalArgumentException | IllegalStateException ex) {
+            // the engine validates what it is given, e.g. the number of players or the positions of the agents
+            throw new IOException("Invalid state: " + ex.getMessage(), ex);
+        }
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(VERSION);
+        int numberOfPlayers = game.getNumberOfPlayers();
+        out.writeInt(numberOfPlayers);
+        out.writeBoolean(game.isWithCards());
+        out.writeInt(game.getCurrentPlayer());
+        out.writeInt(game.getCurrentTurnPlayer());
+        out.writeInt(game.getCurrentPhase().ordinal());
+        out.writeInt(game.getPlayersSkippedInARowDuringCardPhase());
+        out.writeBoolean(game.isAllowCustomDieRolls());
+        TreeSet<Integer> disqualifiedPlayers = new TreeSet<>(game.getDisqualifiedPlayers());
+        out.writeInt(disqualifiedPlayers.size());
+        for (int player : disqualifiedPlayers) {
+            out.writeInt(player);
+        }
+
+        HeimlichAndCoBoard board = game.getBoard();
+        Agent[] agents = board.getAgents();
+        out.writeInt(agents.length);
+        for (Agent agent : agents) {
+            out.writeInt(agent.ordinal());
+            out.writeInt(board.getAgentsPositions().get(agent));
+            out.writeInt(board.getScores().get(agent));
+            out.writeBoolean(board.getScoringTriggeredForAgent().getOrDefault(agent, false));
+        }
+        out.writeInt(board.getSafePosition());
+        out.writeInt(board.getLastDieRoll());
+
+        for (int player = 0; player < numberOfPlayers; player++) {
+            Agent agent = game.getPlayersToAgentsMap().get(player);
+            out.writeInt(agent == null ? -1 : agent.ordinal());
+        }
+
+        Map<Integer, List<HeimlichAndCoCard>> cards = game.getCards();
+        if (cards == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(cards.size());
+            for (int player : new TreeSet<>(cards.keySet())) {
+                out.writeInt(player);
+                writeCards(cards.get(player), out);
+            }
+        }
+        writeCards(game.getCardStack() == null ? null : game.getCardStack().getCards(), out);
+
+        List<ActionRecord<HeimlichAndCoAction>> records = game.getActionRecords();
+        out.writeInt(records.size());
+        for (ActionRecord<HeimlichAndCoAction> record : records) {
+            HeimlichAndCoAction action = record.getAction();
+            out.writeInt(record.getPlayer());
+            out.writeInt(ActionCodec.encode(action));
+            out.writeInt(action instanceof HeimlichAndCoDieRollAction ? ActionCodec.getRolledValue((HeimlichAndCoDieRollAction) action) : 0);
+        }
+
+        for (OpponentProfiles.Profile prior : priors) {
+            out.writeBoolean(prior != null);
+            if (prior != null) {
+                prior.write(out);
+            }
+        }
+    }
+
+    HeimlichAndCo getGame() {
+        return game;
+    }
+
+    /**
+     * @return the profile every player's trackers were given as prior, null for players without one
+     */
+    OpponentProfiles.Profile[] getPriors() {
+        return priors.clone();
+    }
+
+    private static HeimlichAndCo readGame(DataInputStream in) throws IOException {
+        int numberOfPlayers = in.readInt();
+        boolean withCards = in.readBoolean();
+        int currentPlayer = in.readInt();
+        int currentTurnPlayer = in.readInt();
+        HeimlichAndCoPhase phase = readEnum(HeimlichAndCoPhase.values(), in);
+        int playersSkippedInARow = in.readInt();
+        boolean allowCustomDieRolls = in.readBoolean();
+        List<Integer> disqualifiedPlayers = new ArrayList<>();
+        for (int i = readCount(in); i > 0; i--) {
+            disqualifiedPlayers.add(in.readInt());
+        }
+
+        Map<Agent, Integer> positions = new EnumMap<>(Agent.class);
+        Map<Agent, Integer> scores = new EnumMap<>(Agent.class);
+        Map<Agent, Boolean> scoringTriggered = new EnumMap<>(Agent.class);
+        for (int i = readCount(in); i > 0; i--) {
+            Agent agent = readEnum(Agent.values(), in);
+            positions.put(agent, in.readInt());
+            scores.put(agent, in.readInt());
+            scoringTriggered.put(agent, in.readBoolean());
+        }
+        HeimlichAndCoBoard board = new HeimlichAndCoBoard(positions, scores);
+        // moving the safe resets the scoring triggers, so they are restored afterwards
+        board.moveSafe(in.readInt());
+        board.setLastDieRoll(in.readInt());
+        board.getScoringTriggeredForAgent().putAll(scoringTriggered);
+
+        Map<Integer, Agent> playersToAgents = new HashMap<>();
+        for (int player = 0; player < numberOfPlayers; player++) {
+            int agent = in.readInt();
+            if (agent >= 0) {
+                playersToAgents.put(player, readEnum(Agent.values(), agent));
+            }
+        }
+
+        Map<Integer, List<HeimlichAndCoCard>> hands = null;
+        int handCount = in.readInt();
+        if (handCount > MAX_COUNT) {
+            throw new IOException("Invalid count " + handCount);
+        } else if (handCount >= 0) {
+            hands = new HashMap<>();
+            for (int i = handCount; i > 0; i--) {
+                hands.put(in.readInt(), readCards(in));
+            }
+        }
+        List<HeimlichAndCoCard> stack = readCards(in);
+
+        List<ActionRecord<HeimlichAndCoAction>> records = new ArrayList<>();
+        for (int i = readCount(in); i > 0; i--) {
+            int player = in.readInt();
+            int code = in.readInt();
+            records.add(new ActionRecord<>(player, ActionCodec.create(code, in.readInt())));
+        }
+
+        HeimlichAndCo game = new HeimlichAndCo(currentPlayer, numberOfPlayers, records, board, playersToAgents, withCards);
+        if (withCards) {
+            // the constructor deals new cards, they are replaced by the written ones
+            game.getCards().clear();
+            if (hands != null) {
+                game.getCards().putAll(hands);
+            }
+            game.setCardStack(stack == null ? null : new CardStack<>(stack));
+        }
+        game.getDisqualifiedPlayers().addAll(disqualifiedPlayers);
+        game.setPlayersSkippedInARowDuringCardPhase(playersSkippedInARow);
+        game.setAllowCustomDieRolls(allowCustomDieRolls);
+        set(PHASE, game, phase);
+        set(CURRENT_TURN_PLAYER, game, currentTurnPlayer);
+        return game;
+    }
+
+    private static void writeCards(List<HeimlichAndCoCard> cards, DataOutputStream out) throws IOException {
+        if (cards == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(cards.size());
+        for (HeimlichAndCoCard card : cards) {
+            out.writeInt(ActionCodec.getCardKind(card));
+        }
+    }
+
+    /**
+     * @return the cards written by {@link #writeCards}, or null
+     */
+    private static List<HeimlichAndCoCard> readCards(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            return null;
+        }
+        if (count > MAX_COUNT) {
+            throw new IOException("Invalid count " + count);
+        }
+        // linked lists, like the hands and the stack the engine creates
+        List<HeimlichAndCoCard> cards = new LinkedList<>();
+        for (int i = 0; i < count; i++) {
+            cards.add(ActionCodec.newCard(in.readInt()));
+        }
+        return cards;
+    }
+
+    private static int readCount(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > MAX_COUNT) {
+            throw new IOException("Invalid count " + count);
+        }
+        return count;
+    }
+
+    private static <E extends Enum<E>> E readEnum(E[] values, DataInputStream in) throws IOException {
+        return readEnum(values, in.readInt());
+    }
+
+    private static <E extends Enum<E>> E readEnum(E[] values, int ordinal) throws IOException {
+        if (ordinal < 0 || ordinal >= values.length) {
+            throw new IOException("Invalid " + values.getClass().getComponentType().getSimpleName() + " " + ordinal);
+        }
+        return values[ordinal];
+    }
+
+    private static void set(Field field, Object target, Object value) {
+        try {
+            field.set(target, value);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Could not write " + field.getName(), e);
+        }
+    }
+
+    private static Field accessibleField(String name) {
+        try {
+            Field field = HeimlichAndCo.class.getDeclaredField(name);
+            field.setAccessible(true);
+            return field;
+        } catch (NoSuchFieldException e) {
+            throw new IllegalStateException("Engine class HeimlichAndCo has no field " + name, e);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package heimlich_and_co_agent;
+
+import heimlich_and_co.HeimlichAndCo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The top of a search tree at decision time, for offline analysis of a decision (e.g. with
+ * heimlich_and_co_tools.TreeSnapshotReader): whether the budget was too small, the right move was pruned or its value
+ * was misjudged.
+ * <p>
+ * Only the most visited children of every node are kept (top k), level by level from the root, until the node budget
+ * is reached, so a snapshot is small and cheap to write. Per node: the index of its parent (-1 for the root), the key
+ * of the action leading to it (see {@link ActionCodec}; canonical for equivalent agent moves, -1 for the root), its
+ * depth, the player to act, whether its outcome is proven, its playouts, its expanded children (also those that were
+ * not kept) and its reward sum per player. All nodes of a tree are searched in the same determinization, whose id (the
+ * hash of the determinized root, see {@link StateHasher}) is stored once.
+ * <p>
+ * Written by DetectiveGoetzbach when a tree directory is set (see {@link DetectiveGoetzbach#setTreeDirectory}).
+ */
+public final class TreeSnapshot {
+
+    private static final int MAGIC = 0x44475453; // "DGTS"
+    private static final int VERSION = 1;
+
+    private final int playerId;
+    private final int numberOfPlayers;
+    private final long determinization;
+    private final int[] parents;
+    private final int[] actionCodes;
+    private final int[] depths;
+    private final int[] actingPlayers;
+    private final boolean[] solved;
+    private final int[] playouts;
+    private final int[] expandedChildren;
+    private final double[][] rewards;
+
+    private TreeSnapshot(int playerId, int numberOfPlayers, long determinization, int nodes) {
+        this.playerId = playerId;
+        this.numberOfPlayers = numberOfPlayers;
+        this.determinization = determinization;
+        this.parents = new int[nodes];
+        this.actionCodes = new int[nodes];
+        this.depths = new int[nodes];
+        this.actingPlayers = new int[nodes];
+        this.solved = new boolean[nodes];
+        this.playouts = new int[nodes];
+        this.expandedChildren = new int[nodes];
+        this.rewards = new double[nodes][];
+    }
+
+    /**
+     * Takes the snapshot of a tree.
+     *
+     * @param root       of the tree
+     * @param playerId   player the tree is searched for
+     * @param topK       children kept per node, the most visited ones
+     * @param nodeBudget maximum number of nodes kept
+     * @return the snapshot, with the nodes in breadth-first order
+     */
+    public static TreeSnapshot capture(MCTSNode root, int playerId, int topK, int nodeBudget) {
+        List<MCTSNode> nodes = new ArrayList<>();
+        List<Integer> parentIndices = new ArrayList<>();
+        List<Integer> codes = new ArrayList<>();
+        nodes.add(root);
+        parentIndices.add(-1);
+        codes.add(-1);
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        queue.add(0);
+        while (!queue.isEmpty() && nodes.size() < nodeBudget) {
+            int index = queue.poll();
+            IntObjectMap<MCTSNode> children = nodes.get(index).getChildren();
+            List<Integer> slots = new ArrayList<>();
+            for (int slot = 0; slot < children.capacity(); slot++) {
+                if (children.keyAt(slot) >= 0) {
+                    slots.add(slot);
+                }
+            }
+            // most visited first, equal playouts by the key of the action
+            slots.sort(Comparator.comparingInt((Integer slot) -> -children.valueAt(slot).getPlayouts())
+                    .thenComparingInt(children::keyAt));
+            for (int i = 0; i < Math.min(topK, slots.size()) && nodes.size() < nodeBudget; i++) {
+                queue.add(nodes.size());
+                nodes.add(children.valueAt(slots.get(i)));
+                parentIndices.add(index);
+                codes.add(children.keyAt(slots.get(i)));
+            }
+        }
+
+        HeimlichAndCo game = root.getGame();
+        TreeSnapshot snapshot = new TreeSnapshot(playerId, game.getNumberOfPlayers(), StateHasher.hash(game), nodes.size());
+        for (int i = 0; i < nodes.size(); i++) {
+            MCTSNode node = nodes.get(i);
+            snapshot.parents[i] = parentIndices.get(i);
+            snapshot.actionCodes[i] = codes.get(i);
+            snapshot.depths[i] = node.getDepth() - root.getDepth();
+            snapshot.actingPlayers[i] = node.getActingPlayer();
+            snapshot.solved[i] = node.isSolved();
+            snapshot.playouts[i] = node.getPlayouts();
+            snapshot.expandedChildren[i] = node.getChildren().size();
+            snapshot.rewards[i] = new double[snapshot.numberOfPlayers];
+            for (int player = 0; player < snapshot.numberOfPlayers; player++) {
+                snapshot.rewards[i][player] = node.getReward(player);
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Reads a snapshot written by {@link #write(Path)}.
+     *
+     * @throws IOException if the file cannot be read or is not a tree snapshot
+     */
+    public static TreeSnapshot read(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a tree snapshot: " + path);
+            }
+            int playerId = in.readInt();
+            int numberOfPlayers = in.readInt();
+            long determinization = in.readLong();
+            TreeSnapshot snapshot = new TreeSnapshot(playerId, numberOfPlayers, determinization, in.readInt());
+            for (int i = 0; i < snapshot.size(); i++) {
+                snapshot.parents[i] = in.readInt();
+                snapshot.actionCodes[i] = in.readInt();
+                snapshot.depths[i] = in.readUnsignedShort();
+                snapshot.actingPlayers[i] = in.readByte();
+                snapshot.solved[i] = in.readBoolean();
+                snapshot.playouts[i] = in.readInt();
+                snapshot.expandedChildren[i] = in.readInt();
+                snapshot.rewards[i] = new double[numberOfPlayers];
+                for (int player = 0; player < numberOfPlayers; player++) {
+                    snapshot.rewards[i][player] = in.readDouble();
+                }
+            }
+            return snapshot;
+        }
+    }
+
+    public void write(Path path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(playerId);
+            out.writeInt(numberOfPlayers);
+            out.writeLong(determinization);
+            out.writeInt(size());
+            for (int i = 0; i < size(); i++) {
+                out.writeInt(parents[i]);
+                out.writeInt(actionCodes[i]);
+                out.writeShort(depths[i]);
+                out.writeByte(actingPlayers[i]);
+                out.writeBoolean(solved[i]);
+                out.writeInt(playouts[i]);
+                out.writeInt(expandedChildren[i]);
+                for (double reward : rewards[i]) {
+                    out.writeDouble(reward);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return number of nodes in the snapshot, the root has index 0
+     */
+    public int size() {
+        return parents.length;
+    }
+
+    public int getPlayerId() {
+        return playerId;
+    }
+
+    public int getNumberOfPlayers() {
+        return numberOfPlayers;
+    }
+
+    /**
+     * @return hash of the determinized root (see {@link StateHasher}), the same for snapshots of the same determinization
+     */
+    public long getDeterminization() {
+        return determinization;
+    }
+
+    /**
+     * @return index of the parent of a node, -1 for the root
+     */
+    public int getParent(int node) {
+        return parents[node];
+    }
+
+    /**
+     * @return key of the action leading to a node (see {@link ActionCodec}), -1 for the root
+     */
+    public int getActionCode(int node) {
+        return actionCodes[node];
+    }
+
+    /**
+     * @return depth of a node below the root
+     */
+    public int getDepth(int node) {
+        return depths[node];
+    }
+
+    public int getActingPlayer(int node) {
+        return actingPlayers[node];
+    }
+
+    public boolean isSolved(int node) {
+        return solved[node];
+    }
+
+    public int getPlayouts(int node) {
+        return playouts[node];
+    }
+
+    /**
+     * @return children of a node in the tree, also those that are not in the snapshot
+     */
+    public int getExpandedChildren(int node) {
+        return expandedChildren[node];
+    }
+
+    /**
+     * @return sum of the rewards of a player achieved from a node
+     */
+    public double getReward(int node, int player) {
+        return rewards[node][player];
+    }
+}
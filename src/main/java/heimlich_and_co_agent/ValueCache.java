@@ -0,0 +1,177 @@
+package heimlich_and_co_agent;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * What earlier searches learned about states, so a later search does not start from scratch: maps the canonical hash
+ * of a state as the searching player knows it (see {@link StateHasher#hashInformationSet}) to the playouts and the mean
+ * reward per player of its node. The hidden information is not part of the key, so the searches of all determinizations
+ * of a state share its entry.
+ * <p>
+ * The cache is filled from the tree at the end of every search (see {@link #record(MCTSNode, int)}) and seeds the
+ * nodes a search expands with prior playouts (see {@link MCTSNode#setValueCache}). It holds at most as many states as
+ * fit into its memory budget and evicts the least recently used ones. Safe to use from the searching and the pondering
+ * thread at once.
+ * <p>
+ * File layout (big endian): magic, version, number of entries, then per entry (least recently used first) the hash,
+ * the playouts, the number of players and the mean reward per player.
+ */
+public final class ValueCache {
+
+    private static final int MAGIC = 0x44475643; // "DGVC"
+    private static final int VERSION = 1;
+
+    /**
+     * Approximate heap usage of an entry with 6 players: the map entry, the boxed hash and the summary with its means.
+     */
+    private static final int ENTRY_BYTES = 192;
+
+    private final int capacity;
+    private final LinkedHashMap<Long, Summary> entries;
+
+    /**
+     * @param memoryBudget bytes the cache may use on the heap
+     */
+    public ValueCache(long memoryBudget) {
+        this.capacity = (int) Math.max(1, Math.min(Integer.MAX_VALUE, memoryBudget / ENTRY_BYTES));
+        // access order, so the eldest entry is the least recently used one
+        this.entries = new LinkedHashMap<Long, Summary>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Summary> eldest) {
+                return size() > ValueCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * @return the summary of a state, or null if it is not cached
+     */
+    public synchronized Summary get(long stateHash) {
+        return entries.get(stateHash);
+    }
+
+    /**
+     * Stores the summary of a state, replacing an older one.
+     */
+    public synchronized void put(long stateHash, Summary summary) {
+        entries.put(stateHash, summary);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Stores the summaries of all nodes of a tree with at least the given playouts (the root included). Only the
+     * playouts of the search count: the prior playouts a node was seeded with came from this cache, storing them again
+     * would count them twice.
+     *
+     * @return number of stored states
+     */
+    public int record(MCTSNode root, int minPlayouts) {
+        int stored = 0;
+        ArrayDeque<MCTSNode> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            MCTSNode node = stack.pop();
+            int playouts = node.getPlayouts() - node.getPriorPlayouts();
+            if (playouts < minPlayouts) {
+                // the playouts of a child are at most those of its parent
+                continue;
+            }
+            double[] means = new double[node.getNumberOfPlayers()];
+            for (int player = 0; player < means.length; player++) {
+                means[player] = (node.getReward(player) - node.getPriorReward(player)) / playouts;
+            }
+            put(node.getStateHash(), new Summary(playouts, means));
+            stored++;
+            IntObjectMap<MCTSNode> children = node.getChildren();
+            for (int slot = 0; slot < children.capacity(); slot++) {
+                if (children.keyAt(slot) >= 0) {
+                    stack.push(children.valueAt(slot));
+                }
+            }
+        }
+        return stored;
+    }
+
+    /**
+     * Adds the entries of a file written by {@link #write(Path)}, as if they were used in the order of the file.
+     *
+     * @throws IOException if the file cannot be read or is not a value cache
+     */
+    public void read(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a value cache: " + path);
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                long stateHash = in.readLong();
+                int playouts = in.readInt();
+                double[] means = new double[in.readUnsignedByte()];
+                for (int player = 0; player < means.length; player++) {
+                    means[player] = in.readDouble();
+                }
+                put(stateHash, new Summary(playouts, means));
+            }
+        }
+    }
+
+    /**
+     * Writes the entries to a file, replacing it at once so a reader never sees a partial file.
+     */
+    public synchronized void write(Path path) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+            // iterating does not count as an access
+            for (Map.Entry<Long, Summary> entry : entries.entrySet()) {
+                out.writeLong(entry.getKey());
+                out.writeInt(entry.getValue().playouts);
+                out.writeByte(entry.getValue().means.length);
+                for (double mean : entry.getValue().means) {
+                    out.writeDouble(mean);
+                }
+            }
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Playouts and mean reward per player of a state. Immutable.
+     */
+    public static final class Summary {
+        private final int playouts;
+        private final double[] means;
+
+        public Summary(int playouts, double[] means) {
+            this.playouts = playouts;
+            this.means = means.clone();
+        }
+
+        public int getPlayouts() {
+            return playouts;
+        }
+
+        public double getMean(int player) {
+            return means[player];
+        }
+
+        public int getNumberOfPlayers() {
+            return means.length;
+        }
+    }
+}
@@ -35,10 +35,19 @@ public class HeimlichAndCoMCTSAgent extends AbstractGameAgent<HeimlichAndCo, Hei
      */
     private static final boolean SIMULATE_ALL_DIE_OUTCOMES = true;
 
+    /**
+     * This constant balances between exploration and exploitation.
+     */
+    private double explorationConstant = MctsNode.DEFAULT_EXPLORATION_CONSTANT;
+
     public HeimlichAndCoMCTSAgent(Logger logger) {
         super(logger);
     }
 
+    public void setExplorationConstant(double explorationConstant) {
+        this.explorationConstant = explorationConstant;
+    }
+
     @Override
     public HeimlichAndCoAction computeNextAction(HeimlichAndCo game, long l, TimeUnit timeUnit) {
         log.deb("MctsAgent: Computing next action\n");
@@ -56,8 +65,7 @@ public class HeimlichAndCoMCTSAgent extends AbstractGameAgent<HeimlichAndCo, Hei
             if (SIMULATE_ALL_DIE_OUTCOMES) {
                 game.setAllowCustomDieRolls(true);
             }
-            MctsNode.setPlayerId(this.playerId);
-            MctsNode tree = new MctsNode(0, 0, game, null);
+            MctsNode tree = new MctsNode(0, 0, game, this.playerId, null, explorationConstant);
             log.deb("MctsAgent: Doing MCTS");
             while (!this.shouldStopComputation()) {
                 Pair<MctsNode, HeimlichAndCoAction> selectionPair = mctsSelection(tree, SIMULATE_ALL_DIE_OUTCOMES);
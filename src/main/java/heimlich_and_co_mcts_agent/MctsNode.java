@@ -21,13 +21,13 @@ public class MctsNode {
      * This constant balances between exploration and exploitation.
      * The usually recommended value for this is square root of 2, but performance may be improved by changing it.
      */
-    private static final double C = Math.sqrt(2);
+    public static final double DEFAULT_EXPLORATION_CONSTANT = Math.sqrt(2);
 
     /**
      * Saves the player id of the player for which the tree is build. I.e. the player for which the best action should
-     * be chosen in the end.
+     * be chosen in the end. Same for all nodes of a tree.
      */
-    private static int playerId;
+    private final int playerId;
     /**
      * the depth of this node; 0 for root node
      */
@@ -41,6 +41,10 @@ public class MctsNode {
      * A child node is reached by taking (applying) the action that is used as the key.
      */
     private final Map<HeimlichAndCoAction, MctsNode> children;
+    /**
+     * the exploration constant used in UCT, same for all nodes of a tree
+     */
+    private final double explorationConstant;
     /**
      * parent of this node; null for root node
      */
@@ -57,15 +61,36 @@ public class MctsNode {
     private final Comparator<HeimlichAndCoAction> actionComparatorUct = Comparator.comparingDouble(this::calculateUCT);
     private final Comparator<HeimlichAndCoAction> actionComparatorQsa = Comparator.comparingDouble(this::calculateQsaOfChild);
 
+    /**
+     * Creates a child node, which belongs to the same tree (player and exploration constant) as its parent.
+     */
     public MctsNode(int wins, int playouts, HeimlichAndCo game, MctsNode parent) {
-        this(game, parent);
+        this(wins, playouts, game, requireParent(parent).playerId, parent, parent.explorationConstant);
+    }
+
+    /**
+     * @param playerId            player for which the tree is built
+     * @param parent              parent of the node; null for the root node
+     * @param explorationConstant balances between exploration and exploitation in UCT
+     */
+    public MctsNode(int wins, int playouts, HeimlichAndCo game, int playerId, MctsNode parent, double explorationConstant) {
+        this(game, playerId, parent, explorationConstant);
         this.wins = wins;
         this.playouts = playouts;
     }
 
+    /**
+     * Creates a child node, which belongs to the same tree (player and exploration constant) as its parent.
+     */
     public MctsNode(HeimlichAndCo game, MctsNode parent) {
+        this(game, requireParent(parent).playerId, parent, parent.explorationConstant);
+    }
+
+    public MctsNode(HeimlichAndCo game, int playerId, MctsNode parent, double explorationConstant) {
         this.game = new HeimlichAndCo(game, false);
+        this.playerId = playerId;
         this.parent = parent;
+        this.explorationConstant = explorationConstant;
         if (parent != null) {
             this.depth = parent.depth + 1;
         } else {
@@ -75,8 +100,11 @@ public class MctsNode {
         this.random = new Random();
     }
 
-    public static void setPlayerId(int playerId) {
-        MctsNode.playerId = playerId;
+    private static MctsNode requireParent(MctsNode parent) {
+        if (parent == null) {
+            throw new IllegalArgumentException("The root node needs the player id and exploration constant");
+        }
+        return parent;
     }
 
     /**
@@ -216,7 +244,7 @@ public class MctsNode {
                 throw new IllegalStateException("Illegal 0 value in calculateUCT");
             }
             double qSA;
-            if (this.game.getCurrentPlayer() == MctsNode.playerId) {
+            if (this.game.getCurrentPlayer() == this.playerId) {
                 qSA = ((double) child.wins / child.playouts);
             } else {
                 //if the current player is not the player we are maximizing for, we have to 'invert' the wins, as the
@@ -227,7 +255,7 @@ public class MctsNode {
 
             double nS = this.playouts;
             double nSA = child.playouts;
-            return qSA + C * Math.sqrt(Math.log(nS) / nSA);
+            return qSA + explorationConstant * Math.sqrt(Math.log(nS) / nSA);
         }
         return Double.MAX_VALUE;
     }
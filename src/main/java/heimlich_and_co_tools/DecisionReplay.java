@@ -0,0 +1,42 @@
+package heimlich_and_co_tools;
+
+import heimlich_and_co.actions.HeimlichAndCoAction;
+import heimlich_and_co_agent.ActionCodec;
+import heimlich_and_co_agent.DecisionTrace;
+import heimlich_and_co_agent.DetectiveGoetzbach;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Replays a decision trace written by a seeded agent (system properties "detective.seed", "detective.iterations" and
+ * "detective.traceDir") and checks that the agent still makes the same decision with the same search statistics.
+ * Useful to reproduce a bad move in a debugger, or to check that a change of the search did not change its results.
+ * <p>
+ * The replay has to run with the same leaf batch size ("detective.leafBatchSize") as the traced search. Exits with
+ * status 1 if the replayed decision differs from the traced one.
+ * <p>
+ * Usage: DecisionReplay trace
+ */
+public class DecisionReplay {
+
+    public static void main(String[] args) throws IOException {
+        DecisionTrace trace = DecisionTrace.read(Paths.get(ToolSupport.stringArg(args, 0, "decision.trace")));
+        DetectiveGoetzbach agent = new DetectiveGoetzbach(ToolSupport.newLogger(ToolSupport.LOG_LEVEL_WARN), trace.getParameters());
+        HeimlichAndCoAction action = agent.replay(trace);
+        agent.tearDown();
+        agent.destroy();
+
+        int actionCode = ActionCodec.encode(action);
+        System.out.printf("traced:   action %08x, %d root playouts, Q(s,a) %s%n", trace.getActionCode(),
+                trace.getRootPlayouts(), trace.getRootValue());
+        System.out.printf("replayed: action %08x, %d root playouts, Q(s,a) %s%n", actionCode,
+                agent.getLastRootPlayouts(), agent.getLastRootValue());
+        boolean same = actionCode == trace.getActionCode() && agent.getLastRootPlayouts() == trace.getRootPlayouts()
+                && Double.compare(agent.getLastRootValue(), trace.getRootValue()) == 0;
+        System.out.println(same ? "identical" : "DIFFERENT");
+        if (!same) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package heimlich_and_co_tools;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streaming reader for game record logs written by {@link GameRecordWriter}.
+ * <p>
+ * The log is memory-mapped in windows, so logs larger than the heap (or 2 GB) can be read. Games are accessed through
+ * a single {@link Cursor} that is moved from game to game and reads the fields directly from the mapped buffer; no
+ * objects are created per game or action.
+ */
+public class GameRecordReader implements Closeable {
+
+    /**
+     * Size of the mapped windows; a window is always large enough for at least one complete game.
+     */
+    private static final long WINDOW_SIZE = 1L << 28;
+
+    private final FileChannel channel;
+    private final long fileSize;
+
+    private GameRecordReader(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.fileSize = channel.size();
+    }
+
+    /**
+     * Opens a log for reading.
+     *
+     * @param path of the log
+     * @return the reader
+     * @throws IOException if the file cannot be read or is not a game record log
+     */
+    public static GameRecordReader open(Path path) throws IOException {
+        GameRecordReader reader = new GameRecordReader(FileChannel.open(path, StandardOpenOption.READ));
+        try {
+            MappedByteBuffer header = reader.channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(reader.fileSize, GameRecordWriter.HEADER_SIZE));
+            if (reader.fileSize < GameRecordWriter.HEADER_SIZE || header.getInt(0) != GameRecordWriter.MAGIC
+                    || header.getInt(Integer.BYTES) != GameRecordWriter.VERSION) {
+                throw new IOException("Not a game record log of version " + GameRecordWriter.VERSION + ": " + path);
+            }
+        } catch (IOException ex) {
+            reader.close();
+            throw ex;
+        }
+        return reader;
+    }
+
+    /**
+     * Returns a new cursor positioned before the first game.
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Flyweight view of one game of the log. The values returned are only valid until {@link #next()} is called.
+     */
+    public class Cursor {
+
+        private MappedByteBuffer window;
+        private long windowStart;
+        private long nextGame = GameRecordWriter.HEADER_SIZE;
+        // offsets of the current game inside the window
+        private int game;
+        private int actions;
+        private int numberOfPlayers;
+        private int numberOfActions;
+
+        private Cursor() {
+        }
+
+        /**
+         * Moves to the next game.
+         *
+         * @return false if there are no more (complete) games
+         * @throws IOException if the log cannot be mapped
+         */
+        public boolean next() throws IOException {
+            if (nextGame + Integer.BYTES > fileSize) {
+                return false;
+            }
+            map(nextGame, Integer.BYTES);
+            int length = window.getInt((int) (nextGame - windowStart));
+            if (nextGame + Integer.BYTES + length > fileSize) {
+                return false; // a game that is still being written
+            }
+            map(nextGame, Integer.BYTES + length);
+            game = (int) (nextGame - windowStart) + Integer.BYTES;
+            numberOfPlayers = window.get(game);
+            actions = game + 2 * Byte.BYTES + numberOfPlayers * GameRecordWriter.PLAYER_SIZE;
+            numberOfActions = window.getInt(actions);
+            actions += Integer.BYTES;
+            nextGame += Integer.BYTES + length;
+            return true;
+        }
+
+        public int getNumberOfPlayers() {
+            return numberOfPlayers;
+        }
+
+        public boolean isWithCards() {
+            return window.get(game + Byte.BYTES) != 0;
+        }
+
+        public byte getAgentType(int player) {
+            return window.get(playerOffset(player));
+        }
+
+        /**
+         * @return ordinal of the agent ({@link heimlich_and_co.enums.Agent}) of the player
+         */
+        public int getAgentOrdinal(int player) {
+            return window.get(playerOffset(player) + Byte.BYTES);
+        }
+
+        public int getFinalScore(int player) {
+            return window.getShort(playerOffset(player) + 2 * Byte.BYTES);
+        }
+
+        public int getNumberOfActions() {
+            return numberOfActions;
+        }
+
+        public int getPlayer(int action) {
+            return window.get(actionOffset(action));
+        }
+
+        public int getActionCode(int action) {
+            return window.getInt(actionOffset(action) + Byte.BYTES);
+        }
+
+        public int getRootPlayouts(int action) {
+            return window.getInt(actionOffset(action) + Byte.BYTES + Integer.BYTES);
+        }
+
+        public float getRootValue(int action) {
+            return window.getFloat(actionOffset(action) + Byte.BYTES + 2 * Integer.BYTES);
+        }
+
+        private int playerOffset(int player) {
+            return game + 2 * Byte.BYTES + player * GameRecordWriter.PLAYER_SIZE;
+        }
+
+        private int actionOffset(int action) {
+            return actions + action * GameRecordWriter.ACTION_SIZE;
+        }
+
+        /**
+         * Makes sure the given region of the file is inside the mapped window.
+         */
+        private void map(long position, int length) throws IOException {
+            if (window != null && position >= windowStart && position + length <= windowStart + window.capacity()) {
+                return;
+            }
+            long size = Math.min(fileSize - position, Math.max(WINDOW_SIZE, length));
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+            windowStart = position;
+        }
+    }
+
+    /**
+     * Prints a summary of a log: the number of games and decisions and the win rate of each agent type.
+     * <p>
+     * Usage: GameRecordReader [log]
+     */
+    public static void main(String[] args) throws IOException {
+        try (GameRecordReader reader = open(Paths.get(ToolSupport.stringArg(args, 0, "self_play.log")))) {
+            Cursor cursor = reader.cursor();
+            long games = 0;
+            long decisions = 0;
+            long[] seats = new long[2];
+            long[] wins = new long[2];
+            while (cursor.next()) {
+                games++;
+                for (int i = 0; i < cursor.getNumberOfActions(); i++) {
+                    if (cursor.getRootPlayouts(i) >= 0) {
+                        decisions++;
+                    }
+                }
+                int bestScore = Integer.MIN_VALUE;
+                for (int p = 0; p < cursor.getNumberOfPlayers(); p++) {
+                    bestScore = Math.max(bestScore, cursor.getFinalScore(p));
+                    seats[cursor.getAgentType(p)]++;
+                }
+                for (int p = 0; p < cursor.getNumberOfPlayers(); p++) {
+                    if (cursor.getFinalScore(p) == bestScore) {
+                        wins[cursor.getAgentType(p)]++;
+                    }
+                }
+            }
+            System.out.println("Games: " + games + ", searched decisions: " + decisions);
+            System.out.println("DetectiveGoetzbach: " + wins[GameRecordWriter.DETECTIVE_GOETZBACH] + " wins in " + seats[GameRecordWriter.DETECTIVE_GOETZBACH] + " seats");
+            System.out.println("HeimlichAndCoMCTSAgent: " + wins[GameRecordWriter.MCTS_AGENT] + " wins in " + seats[GameRecordWriter.MCTS_AGENT] + " seats");
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package heimlich_and_co_tools;
+
+import at.ac.tuwien.ifs.sge.game.ActionRecord;
+import heimlich_and_co.HeimlichAndCo;
+import heimlich_and_co.actions.HeimlichAndCoAction;
+import heimlich_and_co.actions.HeimlichAndCoDieRollAction;
+import heimlich_and_co.enums.Agent;
+import heimlich_and_co_agent.ActionCodec;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Appends finished games to a binary game record log.
+ * <p>
+ * File layout (big endian): magic and version, followed by the games. Every game starts with its length in bytes (not
+ * counting the length itself), so a reader can skip it without decoding it:
+ * <pre>
+ * int    length
+ * byte   number of players
+ * byte   1 if played with cards, else 0
+ * per player:  byte agent type (see {@link #DETECTIVE_GOETZBACH}), byte agent ordinal, short final score of the agent
+ * int    number of actions
+ * per action:  byte player, int action code ({@link ActionCodec}, die rolls with the rolled face),
+ *              int playouts of the search root (-1 if none), float Q(s,a) of the action (NaN if none)
+ * </pre>
+ * Every game is written at the end of the file while holding a lock on it, so several processes (and several threads
+ * using the same writer) can append to the same log.
+ */
+public class GameRecordWriter implements Closeable {
+
+    static final int MAGIC = 0x44474752; // "DGGR"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 2 * Integer.BYTES;
+    static final int PLAYER_SIZE = 2 * Byte.BYTES + Short.BYTES;
+    static final int ACTION_SIZE = Byte.BYTES + 2 * Integer.BYTES + Float.BYTES;
+
+    /**
+     * Agent type of seats played by DetectiveGoetzbach.
+     */
+    public static final byte DETECTIVE_GOETZBACH = 0;
+    /**
+     * Agent type of seats played by HeimlichAndCoMCTSAgent.
+     */
+    public static final byte MCTS_AGENT = 1;
+
+    private final FileChannel channel;
+
+    private GameRecordWriter(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Opens a log for appending, creating it if it does not exist yet.
+     *
+     * @param path of the log
+     * @return the writer
+     * @throws IOException if the file cannot be opened or is not a game record log
+     */
+    public static GameRecordWriter open(Path path) throws IOException {
+        // not opened with APPEND, which cannot read the header; games are written at the end while holding the lock
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            FileLock lock = channel.lock();
+            try {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                if (channel.size() == 0) {
+                    header.putInt(MAGIC).putInt(VERSION).flip();
+                    writeFully(channel, header, 0);
+                } else {
+                    while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+                        // read until the header is complete or the file ends
+                    }
+                    if (header.hasRemaining() || header.getInt(0) != MAGIC || header.getInt(Integer.BYTES) != VERSION) {
+                        throw new IOException("Not a game record log of version " + VERSION + ": " + path);
+                    }
+                }
+            } finally {
+                lock.release();
+            }
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+        return new GameRecordWriter(channel);
+    }
+
+    /**
+     * Appends a finished game.
+     *
+     * @param game         the finished game (with all information, not the view of a player)
+     * @param agentTypes   agent type per seat
+     * @param rootPlayouts playouts of the search root per action record, -1 where there was no search
+     * @param rootValues   Q(s,a) of the chosen action per action record, NaN where there was no search
+     * @throws IOException if writing fails
+     */
+    public synchronized void append(HeimlichAndCo game, byte[] agentTypes, int[] rootPlayouts, float[] rootValues) throws IOException {
+        List<ActionRecord<HeimlichAndCoAction>> records = game.getActionRecords();
+        int numberOfPlayers = game.getNumberOfPlayers();
+        int length = 2 * Byte.BYTES + numberOfPlayers * PLAYER_SIZE + Integer.BYTES + records.size() * ACTION_SIZE;
+
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + length);
+        buffer.putInt(length);
+        buffer.put((byte) numberOfPlayers);
+        buffer.put((byte) (game.isWithCards() ? 1 : 0));
+        Map<Integer, Agent> playersToAgents = game.getPlayersToAgentsMap();
+        Map<Agent, Integer> scores = game.getBoard().getScores();
+        for (int i = 0; i < numberOfPlayers; i++) {
+            Agent agent = playersToAgents.get(i);
+            buffer.put(agentTypes[i]);
+            buffer.put((byte) agent.ordinal());
+            buffer.putShort(scores.get(agent).shortValue());
+        }
+        buffer.putInt(records.size());
+        for (int i = 0; i < records.size(); i++) {
+            HeimlichAndCoAction action = records.get(i).getAction();
+            if (action instanceof HeimlichAndCoDieRollAction) {
+                // store the face that was rolled, so the game can be replayed
+                action = new HeimlichAndCoDieRollAction(ActionCodec.getRolledValue((HeimlichAndCoDieRollAction) action));
+            }
+            buffer.put((byte) records.get(i).getPlayer());
+            buffer.putInt(ActionCodec.encode(action));
+            buffer.putInt(rootPlayouts[i]);
+            buffer.putFloat(rootValues[i]);
+        }
+        buffer.flip();
+
+        FileLock lock = channel.lock();
+        try {
+            writeFully(channel, buffer, channel.size());
+        } finally {
+            lock.release();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package heimlich_and_co_tools;
+
+import at.ac.tuwien.ifs.sge.agent.GameAgent;
+import heimlich_and_co.HeimlichAndCo;
+import heimlich_and_co.actions.HeimlichAndCoAction;
+import heimlich_and_co_agent.DetectiveGoetzbach;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plays a single game between agents without the SGE engine (no match thread, no logging of the actions).
+ */
+final class MatchRunner {
+
+    /**
+     * The finished game together with the root statistics of every decision.
+     */
+    static final class Result {
+        final HeimlichAndCo game;
+        /**
+         * Playouts of the search root per action record, -1 where the action was not chosen by a search.
+         */
+        final int[] rootPlayouts;
+        /**
+         * Q(s,a) of the chosen action per action record, NaN where the action was not chosen by a search.
+         */
+        final float[] rootValues;
+
+        private Result(HeimlichAndCo game, int[] rootPlayouts, float[] rootValues) {
+            this.game = game;
+            this.rootPlayouts = rootPlayouts;
+            this.rootValues = rootValues;
+        }
+    }
+
+    private MatchRunner() {
+    }
+
+    /**
+     * Plays a game until it is over. The agents are set up before and torn down after the game.
+     *
+     * @param agents        one agent per seat
+     * @param withCards     whether the card variant is played
+     * @param millisPerMove time each agent gets per decision
+     * @return the result of the game
+     */
+    static Result play(List<GameAgent<HeimlichAndCo, HeimlichAndCoAction>> agents, boolean withCards, long millisPerMove) {
+        int numberOfPlayers = agents.size();
+        // our agents keep profiles of their opponents, named by the class of the agent
+        String[] names = new String[numberOfPlayers];
+        for (int i = 0; i < numberOfPlayers; i++) {
+            names[i] = agents.get(i).getClass().getSimpleName();
+        }
+        for (int i = 0; i < numberOfPlayers; i++) {
+            if (agents.get(i) instanceof DetectiveGoetzbach) {
+                ((DetectiveGoetzbach) agents.get(i)).setOpponentNames(names);
+            }
+            agents.get(i).setUp(numberOfPlayers, i);
+        }
+
+        HeimlichAndCo game = new HeimlichAndCo(withCards ? "cards" : "", numberOfPlayers);
+        int[] rootPlayouts = new int[64];
+        float[] rootValues = new float[64];
+        try {
+            while (!game.isGameOver()) {
+                int player = game.getCurrentPlayer();
+                GameAgent<HeimlichAndCo, HeimlichAndCoAction> agent = agents.get(player);
+                HeimlichAndCoAction action = agent.computeNextAction((HeimlichAndCo) game.getGame(player), millisPerMove, TimeUnit.MILLISECONDS);
+                if (!game.isValidAction(action)) {
+                    throw new IllegalStateException("Player " + player + " played an invalid action: " + action);
+                }
+
+                int recordIndex = game.getActionRecords().size();
+                if (recordIndex >= rootPlayouts.length) {
+                    rootPlayouts = Arrays.copyOf(rootPlayouts, rootPlayouts.length * 2);
+                    rootValues = Arrays.copyOf(rootValues, rootValues.length * 2);
+                }
+                if (agent instanceof DetectiveGoetzbach) {
+                    rootPlayouts[recordIndex] = ((DetectiveGoetzbach) agent).getLastRootPlayouts();
+                    rootValues[recordIndex] = (float) ((DetectiveGoetzbach) agent).getLastRootValue();
+                } else {
+                    rootPlayouts[recordIndex] = -1;
+                    rootValues[recordIndex] = Float.NaN;
+                }
+                game.applyAction(action);
+            }
+        } finally {
+            for (GameAgent<HeimlichAndCo, HeimlichAndCoAction> agent : agents) {
+                agent.tearDown();
+                agent.destroy();
+            }
+        }
+        int actions = game.getActionRecords().size();
+        return new Result(game, Arrays.copyOf(rootPlayouts, actions), Arrays.copyOf(rootValues, actions));
+    }
+}
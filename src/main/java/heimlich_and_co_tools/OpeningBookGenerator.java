@@ -0,0 +1,93 @@
+package heimlich_and_co_tools;
+
+import heimlich_and_co.HeimlichAndCo;
+import heimlich_and_co.actions.HeimlichAndCoAction;
+import heimlich_and_co.actions.HeimlichAndCoAgentMoveAction;
+import heimlich_and_co.enums.HeimlichAndCoPhase;
+import heimlich_and_co_agent.ActionCodec;
+import heimlich_and_co_agent.OpeningBook;
+import heimlich_and_co_agent.StateHasher;
+import heimlich_and_co_mcts_agent.HeimlichAndCoMCTSAgent;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Offline generator for the opening book of DetectiveGoetzbach.
+ * <p>
+ * Samples early-game positions by playing random games for up to a given number of rolls, and runs a long MCTS search
+ * (the same search the agent falls back to in the opening) for each sampled decision. The best action is stored with
+ * the canonical hash of the position as seen by the deciding player.
+ * <p>
+ * Usage: OpeningBookGenerator [output] [players, e.g. 2,3,4] [positions per player count] [seconds per position]
+ * [max rolls] [cards: true/false]
+ */
+public class OpeningBookGenerator {
+
+    /**
+     * Probability to stop at a sampled decision; keeps the sampling biased towards the first (most frequent) decisions.
+     */
+    private static final double STOP_PROBABILITY = 0.35;
+
+    public static void main(String[] args) throws IOException {
+        String output = ToolSupport.stringArg(args, 0, "detective_goetzbach.book");
+        String[] playerCounts = ToolSupport.stringArg(args, 1, "2,3,4,5").split(",");
+        int positions = ToolSupport.intArg(args, 2, 200);
+        int seconds = ToolSupport.intArg(args, 3, 10);
+        int maxRolls = ToolSupport.intArg(args, 4, 10);
+        boolean withCards = Boolean.parseBoolean(ToolSupport.stringArg(args, 5, "false"));
+
+        Random random = new Random();
+        TreeMap<Long, Integer> book = new TreeMap<>();
+        for (String playerCount : playerCounts) {
+            int numberOfPlayers = Integer.parseInt(playerCount.trim());
+            for (int i = 0; i < positions; i++) {
+                HeimlichAndCo game = samplePosition(numberOfPlayers, withCards, maxRolls, random);
+                if (game == null) {
+                    continue;
+                }
+                int seat = game.getCurrentPlayer();
+                HeimlichAndCo view = (HeimlichAndCo) game.getGame(seat);
+                long hash = StateHasher.hash(view);
+                if (book.containsKey(hash)) {
+                    continue;
+                }
+                HeimlichAndCoMCTSAgent agent = new HeimlichAndCoMCTSAgent(ToolSupport.newLogger(ToolSupport.LOG_LEVEL_WARN));
+                agent.setUp(numberOfPlayers, seat);
+                HeimlichAndCoAction action = agent.computeNextAction(view, seconds, TimeUnit.SECONDS);
+                book.put(hash, ActionCodec.encode(action));
+                System.out.println(numberOfPlayers + " players, position " + (i + 1) + "/" + positions + ": " + action);
+            }
+        }
+        OpeningBook.write(book, Paths.get(output));
+        System.out.println("Wrote " + book.size() + " positions to " + output);
+    }
+
+    /**
+     * Plays random actions from the initial state and stops at a random decision (more than one option, not a die
+     * roll) before the given number of rolls is reached.
+     *
+     * @return the game at the sampled decision or null if no decision was sampled
+     */
+    private static HeimlichAndCo samplePosition(int numberOfPlayers, boolean withCards, int maxRolls, Random random) {
+        HeimlichAndCo game = new HeimlichAndCo(withCards ? "cards" : "", numberOfPlayers);
+        int rolls = 0;
+        while (!game.isGameOver() && rolls < maxRolls) {
+            Set<HeimlichAndCoAction> possibleActions = game.getPossibleActions();
+            boolean decision = possibleActions.size() > 1 && game.getCurrentPhase() != HeimlichAndCoPhase.DIE_ROLL_PHASE;
+            if (decision && random.nextDouble() < STOP_PROBABILITY) {
+                return game;
+            }
+            HeimlichAndCoAction action = possibleActions.toArray(new HeimlichAndCoAction[0])[random.nextInt(possibleActions.size())];
+            if (action instanceof HeimlichAndCoAgentMoveAction) {
+                rolls++;
+            }
+            game.applyAction(action);
+        }
+        return null;
+    }
+}
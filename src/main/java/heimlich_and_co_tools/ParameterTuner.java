@@ -0,0 +1,165 @@
+package heimlich_and_co_tools;
+
+import at.ac.tuwien.ifs.sge.agent.GameAgent;
+import heimlich_and_co.HeimlichAndCo;
+import heimlich_and_co.actions.HeimlichAndCoAction;
+import heimlich_and_co.enums.Agent;
+import heimlich_and_co_agent.DetectiveGoetzbach;
+import heimlich_and_co_agent.SearchParameters;
+import heimlich_and_co_mcts_agent.HeimlichAndCoMCTSAgent;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Tunes the search parameters of DetectiveGoetzbach with SPSA (simultaneous perturbation stochastic approximation).
+ * <p>
+ * Every iteration perturbs all tuned parameters at once by +/- one step, and plays matches between the agent with the
+ * plus and the agent with the minus parameters (the other seats are played by HeimlichAndCoMCTSAgent, the two seats
+ * are swapped every other game). The difference in their results estimates the gradient of the win rate, the
+ * parameters are moved along it. The matches of an iteration run in parallel threads. After every iteration the
+ * current parameters are written to the profile, which DetectiveGoetzbach loads at startup.
+ * <p>
+ * Usage: ParameterTuner [profile] [iterations] [games per iteration] [milliseconds per move] [workers] [players]
+ * [cards: true/false]
+ */
+public class ParameterTuner {
+
+    /**
+     * Tuned parameters with their step size (the perturbation in SPSA) and bounds.
+     */
+    private static final String[] TUNED = {
+            SearchParameters.EXPLORATION_CONSTANT, SearchParameters.TERMINATION_DEPTH, SearchParameters.PRUNE_THRESHOLD,
+            SearchParameters.PRUNE_KEEP, SearchParameters.SCORING_MOVE_WEIGHT, SearchParameters.OWN_AGENT_WEIGHT,
+            SearchParameters.OPPONENT_AGENT_WEIGHT, SearchParameters.DUMMY_AGENT_WEIGHT, SearchParameters.CARD_WEIGHT,
+            SearchParameters.OPENING_ROLLS
+    };
+    private static final double[] STEP = {0.2, 8, 4, 2, 20, 1, 1, 0.5, 5, 2};
+    private static final double[] MIN = {0.05, 4, 5, 2, 0, 0, 0, 0, 0, 0};
+    private static final double[] MAX = {4.0, 200, 100, 50, 500, 25, 25, 10, 100, 30};
+
+    /**
+     * SPSA gain sequences: a_k = A_GAIN / (k + A_OFFSET)^ALPHA, c_k = 1 / k^GAMMA (in units of the step sizes).
+     */
+    private static final double A_GAIN = 2.0;
+    private static final double A_OFFSET = 10.0;
+    private static final double ALPHA = 0.602;
+    private static final double GAMMA = 0.101;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path profile = Paths.get(ToolSupport.stringArg(args, 0, "detective_goetzbach.profile"));
+        int iterations = ToolSupport.intArg(args, 1, 100);
+        int games = ToolSupport.intArg(args, 2, 8);
+        int millisPerMove = ToolSupport.intArg(args, 3, 500);
+        int workers = ToolSupport.intArg(args, 4, Runtime.getRuntime().availableProcessors());
+        int numberOfPlayers = ToolSupport.intArg(args, 5, 3);
+        boolean withCards = Boolean.parseBoolean(ToolSupport.stringArg(args, 6, "false"));
+
+        SearchParameters parameters = Files.isReadable(profile) ? SearchParameters.load(profile) : SearchParameters.defaults();
+        Random random = new Random();
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            for (int k = 1; k <= iterations; k++) {
+                double a = A_GAIN / Math.pow(k + A_OFFSET, ALPHA);
+                double c = 1.0 / Math.pow(k, GAMMA);
+                int[] delta = new int[TUNED.length];
+                SearchParameters plus = parameters;
+                SearchParameters minus = parameters;
+                for (int i = 0; i < TUNED.length; i++) {
+                    delta[i] = random.nextBoolean() ? 1 : -1;
+                    double value = parameters.get(TUNED[i]);
+                    plus = plus.with(TUNED[i], clamp(i, value + c * delta[i] * STEP[i]));
+                    minus = minus.with(TUNED[i], clamp(i, value - c * delta[i] * STEP[i]));
+                }
+                SearchParameters plusParameters = plus;
+                SearchParameters minusParameters = minus;
+                List<Future<Double>> results = new ArrayList<>();
+                for (int g = 0; g < games; g++) {
+                    boolean swap = g % 2 == 1;
+                    results.add(executor.submit(() -> playMatch(plusParameters, minusParameters, numberOfPlayers, millisPerMove, withCards, swap)));
+                }
+                double difference = 0.0;
+                int played = 0;
+                for (Future<Double> result : results) {
+                    try {
+                        difference += result.get();
+                        played++;
+                    } catch (ExecutionException ex) {
+                        System.err.println("Match failed: " + ex.getCause());
+                    }
+                }
+                if (played == 0) {
+                    System.err.println("Iteration " + k + ": no match finished");
+                    continue;
+                }
+
+                // gradient estimate of the win rate per step, moved in units of the step sizes
+                double gradient = difference / played / (2 * c);
+                for (int i = 0; i < TUNED.length; i++) {
+                    double value = parameters.get(TUNED[i]) + a * gradient * delta[i] * STEP[i];
+                    parameters = parameters.with(TUNED[i], clamp(i, value));
+                }
+                parameters.store(profile, "SPSA iteration " + k + " of " + iterations);
+                System.out.println("Iteration " + k + ": plus - minus = " + difference / played + ", " + parameters);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Plays one match between the two parameter sets.
+     *
+     * @return result of the plus agent minus result of the minus agent
+     */
+    private static double playMatch(SearchParameters plus, SearchParameters minus, int numberOfPlayers, int millisPerMove, boolean withCards, boolean swap) {
+        int plusSeat = swap ? 1 : 0;
+        int minusSeat = swap ? 0 : 1;
+        List<GameAgent<HeimlichAndCo, HeimlichAndCoAction>> agents = new ArrayList<>();
+        for (int i = 0; i < numberOfPlayers; i++) {
+            if (i == plusSeat) {
+                agents.add(new DetectiveGoetzbach(ToolSupport.newLogger(ToolSupport.LOG_LEVEL_WARN), plus));
+            } else if (i == minusSeat) {
+                agents.add(new DetectiveGoetzbach(ToolSupport.newLogger(ToolSupport.LOG_LEVEL_WARN), minus));
+            } else {
+                agents.add(new HeimlichAndCoMCTSAgent(ToolSupport.newLogger(ToolSupport.LOG_LEVEL_WARN)));
+            }
+        }
+        HeimlichAndCo game = MatchRunner.play(agents, withCards, millisPerMove).game;
+        return result(game, plusSeat) - result(game, minusSeat);
+    }
+
+    /**
+     * @return 1 if the player won alone, 1/n if it shares the win with n-1 others, else 0
+     */
+    private static double result(HeimlichAndCo game, int player) {
+        Map<Integer, Agent> playersToAgents = game.getPlayersToAgentsMap();
+        Map<Agent, Integer> scores = game.getBoard().getScores();
+        int bestScore = Integer.MIN_VALUE;
+        int winners = 0;
+        for (int i = 0; i < game.getNumberOfPlayers(); i++) {
+            int score = scores.get(playersToAgents.get(i));
+            if (score > bestScore) {
+                bestScore = score;
+                winners = 1;
+            } else if (score == bestScore) {
+                winners++;
+            }
+        }
+        return scores.get(playersToAgents.get(player)) == bestScore ? 1.0 / winners : 0.0;
+    }
+
+    private static double clamp(int index, double value) {
+        return Math.max(MIN[index], Math.min(MAX[index], value));
+    }
+}
@@ -0,0 +1,85 @@
+package heimlich_and_co_tools;
+
+import at.ac.tuwien.ifs.sge.agent.GameAgent;
+import at.ac.tuwien.ifs.sge.engine.Logger;
+import heimlich_and_co.HeimlichAndCo;
+import heimlich_and_co.actions.HeimlichAndCoAction;
+import heimlich_and_co_agent.DetectiveGoetzbach;
+import heimlich_and_co_mcts_agent.HeimlichAndCoMCTSAgent;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Headless self-play generator for offline tuning.
+ * <p>
+ * Plays games between DetectiveGoetzbach and HeimlichAndCoMCTSAgent (every seat gets a random one of the two, each game
+ * has at least one of both) and appends them to a game record log (see {@link GameRecordWriter}). The games run in
+ * parallel threads, every game with its own agent instances.
+ * <p>
+ * Usage: SelfPlayGenerator [output] [games] [players, e.g. 2,3,4] [milliseconds per move] [workers]
+ * [cards: true/false]
+ */
+public class SelfPlayGenerator {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String output = ToolSupport.stringArg(args, 0, "self_play.log");
+        int games = ToolSupport.intArg(args, 1, 100);
+        String[] playerCounts = ToolSupport.stringArg(args, 2, "2,3,4,5").split(",");
+        int millisPerMove = ToolSupport.intArg(args, 3, 1000);
+        int workers = ToolSupport.intArg(args, 4, Runtime.getRuntime().availableProcessors());
+        boolean withCards = Boolean.parseBoolean(ToolSupport.stringArg(args, 5, "false"));
+
+        AtomicInteger finished = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, workers));
+        try (GameRecordWriter writer = GameRecordWriter.open(Paths.get(output))) {
+            for (int g = 0; g < games; g++) {
+                executor.execute(() -> {
+                    try {
+                        int numberOfPlayers = Integer.parseInt(playerCounts[ThreadLocalRandom.current().nextInt(playerCounts.length)].trim());
+                        HeimlichAndCo game = play(writer, numberOfPlayers, withCards, millisPerMove);
+                        System.out.println("Game " + finished.incrementAndGet() + "/" + games + " (" + numberOfPlayers + " players): "
+                                + game.getBoard().getScores());
+                    } catch (IOException | RuntimeException ex) {
+                        failed.incrementAndGet();
+                        System.err.println("Game failed: " + ex);
+                    }
+                });
+            }
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        System.out.println("Self-play finished, " + failed.get() + " of " + games + " games failed");
+    }
+
+    /**
+     * Plays one game with new agents and appends it to the log.
+     */
+    private static HeimlichAndCo play(GameRecordWriter writer, int numberOfPlayers, boolean withCards, int millisPerMove) throws IOException {
+        Random random = ThreadLocalRandom.current();
+        byte[] agentTypes = new byte[numberOfPlayers];
+        List<GameAgent<HeimlichAndCo, HeimlichAndCoAction>> agents = new ArrayList<>();
+        int ourSeat = random.nextInt(numberOfPlayers);
+        int otherSeat = (ourSeat + 1 + random.nextInt(numberOfPlayers - 1)) % numberOfPlayers;
+        for (int i = 0; i < numberOfPlayers; i++) {
+            boolean ours = i == ourSeat || (i != otherSeat && random.nextBoolean());
+            Logger log = ToolSupport.newLogger(ToolSupport.LOG_LEVEL_WARN);
+            agents.add(ours ? new DetectiveGoetzbach(log) : new HeimlichAndCoMCTSAgent(log));
+            agentTypes[i] = ours ? GameRecordWriter.DETECTIVE_GOETZBACH : GameRecordWriter.MCTS_AGENT;
+        }
+        MatchRunner.Result result = MatchRunner.play(agents, withCards, millisPerMove);
+        writer.append(result.game, agentTypes, result.rootPlayouts, result.rootValues);
+        return result.game;
+    }
+}
@@ -0,0 +1,39 @@
+package heimlich_and_co_tools;
+
+import at.ac.tuwien.ifs.sge.engine.Logger;
+
+/**
+ * Helpers shared by the offline tools.
+ */
+final class ToolSupport {
+
+    /**
+     * Log level at which the logger only prints warnings and errors.
+     */
+    static final int LOG_LEVEL_WARN = 1;
+
+    private ToolSupport() {
+    }
+
+    /**
+     * Creates a logger in the format of the SGE command line interface.
+     *
+     * @param logLevel -2 (trace) to 2 (error)
+     */
+    static Logger newLogger(int logLevel) {
+        return new Logger(logLevel, "[sge ", "",
+                "trace]: ", System.out, "",
+                "debug]: ", System.out, "",
+                "info]: ", System.out, "",
+                "warn]: ", System.err, "",
+                "error]: ", System.err, "");
+    }
+
+    static int intArg(String[] args, int index, int defaultValue) {
+        return args.length > index ? Integer.parseInt(args[index]) : defaultValue;
+    }
+
+    static String stringArg(String[] args, int index, String defaultValue) {
+        return args.length > index ? args[index] : defaultValue;
+    }
+}
@@ -0,0 +1,61 @@
+package heimlich_and_co_tools;
+
+import heimlich_and_co_agent.ActionCodec;
+import heimlich_and_co_agent.TreeSnapshot;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Prints a tree snapshot written by the agent (system property "detective.treeDir"): the principal variation (the most
+ * visited child at every level) and, at every node of it, how the playouts were distributed over its children, with
+ * their Q(s,a) for the player to act. Shows whether a bad move came from too few playouts, a pruned candidate (the
+ * number of expanded children) or a misjudged value.
+ * <p>
+ * Usage: TreeSnapshotReader snapshot [children per level]
+ */
+public class TreeSnapshotReader {
+
+    public static void main(String[] args) throws IOException {
+        TreeSnapshot snapshot = TreeSnapshot.read(Paths.get(ToolSupport.stringArg(args, 0, "decision.tree")));
+        int shown = ToolSupport.intArg(args, 1, 10);
+
+        List<List<Integer>> children = new ArrayList<>();
+        for (int node = 0; node < snapshot.size(); node++) {
+            children.add(new ArrayList<>());
+            if (snapshot.getParent(node) >= 0) {
+                children.get(snapshot.getParent(node)).add(node);
+            }
+        }
+
+        System.out.printf("player %d of %d, determinization %016x, %d nodes, %d root playouts%n", snapshot.getPlayerId(),
+                snapshot.getNumberOfPlayers(), snapshot.getDeterminization(), snapshot.size(), snapshot.getPlayouts(0));
+        int node = 0;
+        while (!children.get(node).isEmpty()) {
+            int actingPlayer = snapshot.getActingPlayer(node);
+            System.out.printf("%ndepth %d, player %d to act, %d playouts, %d children expanded%s%n", snapshot.getDepth(node),
+                    actingPlayer, snapshot.getPlayouts(node), snapshot.getExpandedChildren(node),
+                    snapshot.isSolved(node) ? ", solved" : "");
+            // the snapshot keeps the children most visited first
+            List<Integer> level = children.get(node);
+            for (int i = 0; i < Math.min(shown, level.size()); i++) {
+                int child = level.get(i);
+                System.out.printf("  %-36s %7d playouts %6.1f%%  Q %.3f%s%n", ActionCodec.describe(snapshot.getActionCode(child)),
+                        snapshot.getPlayouts(child), 100.0 * snapshot.getPlayouts(child) / snapshot.getPlayouts(node),
+                        snapshot.getReward(child, actingPlayer) / snapshot.getPlayouts(child),
+                        snapshot.isSolved(child) ? "  solved" : "");
+            }
+            node = level.get(0);
+        }
+
+        System.out.println();
+        System.out.print("principal variation:");
+        List<String> variation = new ArrayList<>();
+        for (int step = node; snapshot.getParent(step) >= 0; step = snapshot.getParent(step)) {
+            variation.add(0, ActionCodec.describe(snapshot.getActionCode(step)));
+        }
+        System.out.println(variation.isEmpty() ? " none" : " " + String.join(" / ", variation));
+    }
+}
@@ -0,0 +1,112 @@
+package heimlich_and_co_agent;
+
+import at.ac.tuwien.ifs.sge.game.ActionRecord;
+import heimlich_and_co.HeimlichAndCo;
+import heimlich_and_co.actions.HeimlichAndCoAction;
+import heimlich_and_co.actions.HeimlichAndCoDieRollAction;
+import heimlich_and_co.cards.HeimlichAndCoCard;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the codes of {@link ActionCodec} identify actions: equal actions get the same code and different actions
+ * different ones, and every code turns back into its action, with and without a game.
+ */
+class ActionCodecTest {
+
+    /**
+     * Positions checked per number of players, taken from random games; together they reach every kind of action,
+     * cards included.
+     */
+    private static final int POSITIONS = 100;
+
+    @Test
+    void codesIdentifyThePossibleActions() {
+        Random random = new Random(42);
+        for (int numberOfPlayers = 2; numberOfPlayers <= 4; numberOfPlayers++) {
+            HeimlichAndCo game = null;
+            for (int position = 0; position < POSITIONS; position++) {
+                if (game == null || game.isGameOver()) {
+                    game = new HeimlichAndCo("cards", numberOfPlayers);
+                    game.setAllowCustomDieRolls(true);
+                }
+                Set<HeimlichAndCoAction> actions = game.getPossibleActions();
+                Map<Integer, HeimlichAndCoAction> byCode = new HashMap<>();
+                for (HeimlichAndCoAction action : actions) {
+                    int code = ActionCodec.encode(action);
+                    HeimlichAndCoAction other = byCode.put(code, action);
+                    assertTrue(other == null, () -> action + " and " + other + " share the code " + ActionCodec.describe(code));
+                    assertEquals(code, ActionCodec.encode(ActionCodec.create(code, 0)), ActionCodec.describe(code));
+                }
+                // decoding searches the possible actions, so only the chosen action is decoded
+                HeimlichAndCoAction chosen = randomAction(actions, random);
+                assertEquals(chosen, ActionCodec.decode(ActionCodec.encode(chosen), game));
+                game.applyAction(chosen);
+            }
+        }
+    }
+
+    @Test
+    void actionRecordsAreCreatedWithTheirRolledFaces() {
+        Random random = new Random(42);
+        HeimlichAndCo game = new HeimlichAndCo("cards", 3);
+        while (!game.isGameOver()) {
+            game.applyAction(randomAction(game.getPossibleActions(), random));
+        }
+        for (ActionRecord<HeimlichAndCoAction> record : game.getActionRecords()) {
+            HeimlichAndCoAction action = record.getAction();
+            int code = ActionCodec.encode(action);
+            if (action instanceof HeimlichAndCoDieRollAction) {
+                int face = ActionCodec.getRolledValue((HeimlichAndCoDieRollAction) action);
+                HeimlichAndCoAction created = ActionCodec.create(code, face);
+                assertEquals(code, ActionCodec.encode(created));
+                assertEquals(face, ActionCodec.getRolledValue((HeimlichAndCoDieRollAction) created));
+            } else {
+                assertEquals(action, ActionCodec.create(code, 0), ActionCodec.describe(code));
+            }
+        }
+    }
+
+    @Test
+    void cardKindsRoundTrip() {
+        for (int kind = 0; kind < ActionCodec.NUMBER_OF_CARD_KINDS; kind++) {
+            HeimlichAndCoCard card = ActionCodec.newCard(kind);
+            assertNotNull(card);
+            assertEquals(kind, ActionCodec.getCardKind(card));
+        }
+        assertThrows(IllegalArgumentException.class, () -> ActionCodec.newCard(ActionCodec.NUMBER_OF_CARD_KINDS));
+    }
+
+    @Test
+    void sortByCodeOrdersByAscendingCode() {
+        HeimlichAndCo game = new HeimlichAndCo("cards", 3);
+        game.setAllowCustomDieRolls(true);
+        game.applyAction(new HeimlichAndCoDieRollAction(6));
+        HeimlichAndCoAction[] sorted = ActionCodec.sortByCode(game.getPossibleActions());
+        assertEquals(game.getPossibleActions().size(), sorted.length);
+        for (int i = 1; i < sorted.length; i++) {
+            assertTrue(ActionCodec.encode(sorted[i - 1]) < ActionCodec.encode(sorted[i]));
+        }
+    }
+
+    @Test
+    void createRejectsInvalidCodes() {
+        int unknownType = 7 << 26;
+        assertThrows(IllegalArgumentException.class, () -> ActionCodec.create(unknownType, 0));
+    }
+
+    private static HeimlichAndCoAction randomAction(Set<HeimlichAndCoAction> actions, Random random) {
+        List<HeimlichAndCoAction> sorted = List.of(ActionCodec.sortByCode(actions));
+        return sorted.get(random.nextInt(sorted.size()));
+    }
+}
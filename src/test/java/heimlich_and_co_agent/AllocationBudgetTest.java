@@ -0,0 +1,238 @@
+package heimlich_and_co_agent;
+
+import at.ac.tuwien.ifs.sge.engine.Logger;
+import at.ac.tuwien.ifs.sge.util.pair.Pair;
+import heimlich_and_co.HeimlichAndCo;
+import heimlich_and_co.actions.HeimlichAndCoAction;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Properties;
+import java.util.Random;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Measures the bytes allocated per unit of work on the hot paths of the search and compares them with the budgets in
+ * allocation_budgets.properties, so allocations that creep back into optimized code fail the build.
+ * <p>
+ * Measured units: one step of a playout (the simulation of the agent),
+ * one selection descent from the root of a grown tree, one backpropagation of a reward per player (as after a playout
+ * of the agent) and one pass of the trackers of the agent over a single action record (catching up on a finished
+ * game). Every unit is run untimed first, so the numbers are those of compiled code.
+ */
+class AllocationBudgetTest {
+
+    /**
+     * Units per measurement.
+     */
+    private static final int UNITS = 200;
+
+    /**
+     * Playout steps per measurement. The games of the engine are dealt with its own random numbers, so the playouts
+     * differ from run to run; averaging over many of them keeps the measurement steady.
+     */
+    private static final int ROLLOUT_STEPS = 5_000;
+
+    private static final int NUMBER_OF_PLAYERS = 3;
+
+    /**
+     * Random plies played before the measurements, so they run on a position with typical branching.
+     */
+    private static final int SETUP_PLIES = 30;
+
+    /**
+     * Number of nodes the tree for the selection and backpropagation measurements is grown to.
+     */
+    private static final int TREE_SIZE = 100;
+
+    /**
+     * Fewest action records of the game the trackers catch up on. Random games have 120 to 400 records; the creation of
+     * the trackers is spread over the records, so a short game would measure mostly the creation.
+     */
+    private static final int MIN_GAME_RECORDS = 200;
+
+    /**
+     * Log level at which the logger only prints warnings and errors.
+     */
+    private static final int LOG_LEVEL_WARN = 1;
+
+    private static Properties budgets;
+
+    @BeforeAll
+    static void loadBudgets() throws IOException {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean,
+                "The JVM cannot measure allocated bytes per thread");
+        budgets = new Properties();
+        try (InputStream in = AllocationBudgetTest.class.getResourceAsStream("/allocation_budgets.properties")) {
+            assertNotNull(in, "allocation_budgets.properties is missing");
+            budgets.load(in);
+        }
+    }
+
+    /**
+     * One unit is a step of a playout of the simulation of the agent, including its share of the copy of the node and
+     * of the evaluation. The simulation checks whether to stop once per step (and once more when it reaches the
+     * termination depth), so the checks count the steps.
+     */
+    @Test
+    void rolloutStepStaysWithinBudget() {
+        Random random = new Random(42);
+        DetectiveGoetzbach agent = new DetectiveGoetzbach(newLogger(), SearchParameters.defaults());
+        MCTSNode node = new MCTSNode(midgame(random), 0, null, SearchParameters.defaults());
+        // in a fixed order like in a seeded search, so every run measures the same playouts
+        RolloutPolicy rolloutPolicy = RolloutPolicy.fromDiceTracker(0, NUMBER_OF_PLAYERS, new DiceTracker(NUMBER_OF_PLAYERS))
+                .inCanonicalOrder();
+        int[] steps = new int[1];
+        BooleanSupplier countSteps = () -> {
+            steps[0]++;
+            return false;
+        };
+        assertWithinBudget("rolloutStep", ROLLOUT_STEPS, () -> {
+            steps[0] = 0;
+            agent.mctsSimulation(node, rolloutPolicy, countSteps, random);
+            return steps[0];
+        });
+    }
+
+    @Test
+    void selectionStaysWithinBudget() {
+        MCTSNode tree = grownTree(new Random(42));
+        assertWithinBudget("selection", () -> {
+            tree.selection(true);
+            return 1;
+        });
+    }
+
+    @Test
+    void backpropagationStaysWithinBudget() {
+        Random random = new Random(42);
+        MCTSNode leaf = grownTree(random).selection(true).getA();
+        double[] rewardSums = randomRewards(random);
+        assertWithinBudget("backpropagation", () -> {
+            leaf.backpropagation(rewardSums, 1);
+            return 1;
+        });
+    }
+
+    /**
+     * One unit is an action record that the trackers of the agent process. The trackers catch up on the whole record
+     * backlog of a finished game at once (like after pondering or when joining a game late), then start over with new
+     * trackers (their creation is part of the measurement, it is small compared to a game of
+     * {@link #MIN_GAME_RECORDS}).
+     */
+    @Test
+    void syncTrackersStaysWithinBudget() {
+        Random random = new Random(42);
+        DetectiveGoetzbach agent = new DetectiveGoetzbach(newLogger(), SearchParameters.defaults());
+        HeimlichAndCo game;
+        do {
+            game = new HeimlichAndCo("cards", NUMBER_OF_PLAYERS);
+            while (!game.isGameOver()) {
+                game.applyAction(randomAction(game, random));
+            }
+        } while (game.getActionRecords().size() < MIN_GAME_RECORDS);
+        HeimlichAndCo finished = game;
+        int records = game.getActionRecords().size();
+        assertWithinBudget("syncTrackers", () -> {
+            agent.initializeTrackers(NUMBER_OF_PLAYERS);
+            agent.syncTrackers(finished);
+            return records;
+        });
+    }
+
+    private static void assertWithinBudget(String unitName, IntSupplier unit) {
+        assertWithinBudget(unitName, UNITS, unit);
+    }
+
+    private static void assertWithinBudget(String unitName, int units, IntSupplier unit) {
+        String budget = budgets.getProperty(unitName);
+        assertNotNull(budget, "No budget for " + unitName);
+        double measured = measure(unit, units);
+        assertTrue(measured <= Double.parseDouble(budget.trim()),
+                String.format("%s allocates %.1f bytes/unit, budget %s", unitName, measured, budget.trim()));
+    }
+
+    /**
+     * Runs the units once untimed, then measures them.
+     *
+     * @param unit  does some work and returns how many units it did
+     * @param units to measure at least
+     * @return allocated bytes per unit
+     */
+    private static double measure(IntSupplier unit, int units) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for (int done = 0; done < units; ) {
+            done += unit.getAsInt();
+        }
+        long thread = Thread.currentThread().getId();
+        // reading the counter may allocate itself, this is subtracted from the measurement
+        long first = threads.getThreadAllocatedBytes(thread);
+        long overhead = threads.getThreadAllocatedBytes(thread) - first;
+        long before = threads.getThreadAllocatedBytes(thread);
+        int done = 0;
+        while (done < units) {
+            done += unit.getAsInt();
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - before - overhead;
+        return Math.max(0, allocated) / (double) done;
+    }
+
+    /**
+     * @return a game after some random plies, allowing custom die rolls like the games in the search
+     */
+    private static HeimlichAndCo midgame(Random random) {
+        HeimlichAndCo game;
+        do {
+            game = new HeimlichAndCo("cards", NUMBER_OF_PLAYERS);
+            for (int i = 0; i < SETUP_PLIES && !game.isGameOver(); i++) {
+                game.applyAction(randomAction(game, random));
+            }
+        } while (game.isGameOver());
+        game.setAllowCustomDieRolls(true);
+        return game;
+    }
+
+    /**
+     * Grows a tree with random rewards instead of playouts, so its shape is that of a real search.
+     */
+    private static MCTSNode grownTree(Random random) {
+        MCTSNode tree = new MCTSNode(midgame(random), 0, null, SearchParameters.defaults());
+        for (int i = 0; i < TREE_SIZE; i++) {
+            Pair<MCTSNode, HeimlichAndCoAction> selected = tree.selection(true);
+            MCTSNode node = selected.getB() == null ? selected.getA() : selected.getA().expansion(selected.getB(), true);
+            node.backpropagation(randomRewards(random), 1);
+        }
+        return tree;
+    }
+
+    private static double[] randomRewards(Random random) {
+        double[] rewards = new double[NUMBER_OF_PLAYERS];
+        for (int player = 0; player < rewards.length; player++) {
+            rewards[player] = random.nextDouble();
+        }
+        return rewards;
+    }
+
+    private static HeimlichAndCoAction randomAction(HeimlichAndCo game, Random random) {
+        // in a fixed order, so every run measures the same games
+        HeimlichAndCoAction[] actions = ActionCodec.sortByCode(game.getPossibleActions());
+        return actions[random.nextInt(actions.length)];
+    }
+
+    static Logger newLogger() {
+        return new Logger(LOG_LEVEL_WARN, "[sge ", "",
+                "trace]: ", System.out, "",
+                "debug]: ", System.out, "",
+                "info]: ", System.out, "",
+                "warn]: ", System.err, "",
+                "error]: ", System.err, "");
+    }
+}
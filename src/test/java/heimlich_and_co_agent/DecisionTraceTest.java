@@ -0,0 +1,96 @@
+package heimlich_and_co_agent;
+
+import at.ac.tuwien.ifs.sge.engine.Logger;
+import heimlich_and_co.HeimlichAndCo;
+import heimlich_and_co.actions.HeimlichAndCoAction;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Makes a seeded decision with a trace directory, reads the trace it wrote and replays it with a new agent: the replay
+ * has to choose the same action with the same root statistics.
+ */
+class DecisionTraceTest {
+
+    private static final long SEED = 7;
+    private static final int ITERATIONS = 20;
+    /**
+     * Random actions played before the decision, so the trackers have a history to catch up on.
+     */
+    private static final int ACTIONS_BEFORE = 30;
+
+    @Test
+    void cardGameDecisionIsReplayed(@TempDir Path directory) throws IOException {
+        assertReplayed(new HeimlichAndCo("cards", 3), directory);
+    }
+
+    @Test
+    void decisionWithoutCardsIsReplayed(@TempDir Path directory) throws IOException {
+        assertReplayed(new HeimlichAndCo(4), directory);
+    }
+
+    private static void assertReplayed(HeimlichAndCo game, Path directory) throws IOException {
+        HeimlichAndCo view = decisionOfPlayer0(game, new Random(42));
+        DetectiveGoetzbach agent = newAgent();
+        agent.setUp(game.getNumberOfPlayers(), 0);
+        agent.setDeterministic(SEED, ITERATIONS);
+        agent.setTraceDirectory(directory);
+        HeimlichAndCoAction action = agent.computeNextAction(view, 1, TimeUnit.DAYS);
+        int rootPlayouts = agent.getLastRootPlayouts();
+        double rootValue = agent.getLastRootValue();
+        agent.destroy();
+        assertTrue(rootPlayouts > 0, "the decision was not made by the search");
+
+        List<Path> traces;
+        try (Stream<Path> files = Files.list(directory)) {
+            traces = files.collect(Collectors.toList());
+        }
+        assertEquals(1, traces.size());
+        DecisionTrace trace = DecisionTrace.read(traces.get(0));
+        assertEquals(ActionCodec.encode(action), trace.getActionCode());
+        assertEquals(rootPlayouts, trace.getRootPlayouts());
+        assertEquals(rootValue, trace.getRootValue());
+
+        DetectiveGoetzbach replaying = newAgent();
+        HeimlichAndCoAction replayed = replaying.replay(trace);
+        replaying.destroy();
+        assertEquals(trace.getActionCode(), ActionCodec.encode(replayed));
+        assertEquals(trace.getRootPlayouts(), replaying.getLastRootPlayouts());
+        assertEquals(trace.getRootValue(), replaying.getLastRootValue());
+    }
+
+    /**
+     * Plays random actions until player 0 has a choice after {@link #ACTIONS_BEFORE} actions, and returns what player 0
+     * sees of the game then.
+     */
+    private static HeimlichAndCo decisionOfPlayer0(HeimlichAndCo game, Random random) {
+        while (game.getActionRecords().size() < ACTIONS_BEFORE || game.getCurrentPlayer() != 0
+                || game.getPossibleActions().size() < 2) {
+            HeimlichAndCoAction[] actions = ActionCodec.sortByCode(game.getPossibleActions());
+            game.applyAction(actions[random.nextInt(actions.length)]);
+        }
+        return (HeimlichAndCo) game.getGame(0);
+    }
+
+    private static DetectiveGoetzbach newAgent() {
+        // errors only
+        return new DetectiveGoetzbach(new Logger(2, "[sge ", "",
+                "trace]: ", System.out, "",
+                "debug]: ", System.out, "",
+                "info]: ", System.out, "",
+                "warn]: ", System.err, "",
+                "error]: ", System.err, ""), SearchParameters.defaults());
+    }
+}
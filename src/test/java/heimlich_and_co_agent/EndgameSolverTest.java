@@ -0,0 +1,68 @@
+package heimlich_and_co_agent;
+
+import heimlich_and_co.HeimlichAndCo;
+import heimlich_and_co.actions.HeimlichAndCoAction;
+import heimlich_and_co.actions.HeimlichAndCoAgentMoveAction;
+import heimlich_and_co.actions.HeimlichAndCoDieRollAction;
+import heimlich_and_co.enums.Agent;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the endgame solver on positions whose outcome is known: one that the current move decides and one that is
+ * far from the end.
+ */
+class EndgameSolverTest {
+
+    private static final int MAX_TURNS = 2;
+    private static final int NODE_BUDGET = 100_000;
+    private static final int SMALL_NODE_BUDGET = 1_000;
+
+    @Test
+    void findsTheMoveThatWinsNow() {
+        // our agent (the first one) scores 7 when it enters the building of the safe, three fields ahead
+        HeimlichAndCo game = rolled(TestGames.position(3, new int[]{4, 0, 0, 0, 0}, new int[]{40, 10, 10, 10, 10}, 7), 3);
+        assertTrue(EndgameSolver.isEndgame(game));
+
+        SearchParameters parameters = SearchParameters.defaults();
+        EndgameSolver solver = new EndgameSolver(0, MAX_TURNS, NODE_BUDGET, true, parameters);
+        HeimlichAndCoAction action = solver.solve(game, () -> false);
+        int ourAgentOnly = ActionCodec.withSteps(ActionCodec.encode(HeimlichAndCoAgentMoveAction.getNoMoveAction()), Agent.values()[0], 3);
+        assertEquals(ourAgentOnly, ActionCodec.encode(action), () -> ActionCodec.describe(ActionCodec.encode(action)));
+
+        HeimlichAndCo finished = game.doAction(action);
+        assertTrue(finished.isGameOver());
+        assertEquals(parameters.getWinUtility(), MCTSNode.outcome(finished, parameters)[0]);
+    }
+
+    @Test
+    void answersNothingFarFromTheEnd() {
+        HeimlichAndCo game = farFromTheEnd();
+        assertFalse(EndgameSolver.isEndgame(game));
+
+        // no line ends within the turns (or the budget), so nothing is proven
+        EndgameSolver solver = new EndgameSolver(0, MAX_TURNS, SMALL_NODE_BUDGET, true, SearchParameters.defaults());
+        assertNull(solver.solve(game, () -> false));
+    }
+
+    @Test
+    void answersNothingWhenStopped() {
+        EndgameSolver solver = new EndgameSolver(0, MAX_TURNS, NODE_BUDGET, true, SearchParameters.defaults());
+        assertNull(solver.solve(farFromTheEnd(), () -> true));
+        assertEquals(1, solver.getEvaluatedNodes());
+    }
+
+    private static HeimlichAndCo farFromTheEnd() {
+        return rolled(TestGames.position(3, new int[]{4, 0, 0, 0, 0}, new int[]{10, 10, 10, 10, 10}, 7), 3);
+    }
+
+    private static HeimlichAndCo rolled(HeimlichAndCo game, int face) {
+        game.setAllowCustomDieRolls(true);
+        game.applyAction(new HeimlichAndCoDieRollAction(face));
+        return game;
+    }
+}
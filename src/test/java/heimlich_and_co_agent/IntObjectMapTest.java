@@ -0,0 +1,71 @@
+package heimlich_and_co_agent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares {@link IntObjectMap} with a HashMap, across resizes and with keys that collide in the table.
+ */
+class IntObjectMapTest {
+
+    private static final int ENTRIES = 10_000;
+
+    @Test
+    void behavesLikeAHashMap() {
+        Random random = new Random(42);
+        IntObjectMap<String> map = new IntObjectMap<>();
+        Map<Integer, String> expected = new HashMap<>();
+        for (int i = 0; i < ENTRIES; i++) {
+            // a small key range, so many keys are put again
+            int key = random.nextInt(ENTRIES);
+            map.put(key, "value " + i);
+            expected.put(key, "value " + i);
+        }
+        assertEquals(expected.size(), map.size());
+        for (int key = 0; key < ENTRIES; key++) {
+            assertEquals(expected.get(key), map.get(key));
+            assertEquals(expected.containsKey(key), map.containsKey(key));
+        }
+    }
+
+    @Test
+    void slotsHoldEveryEntryOnce() {
+        IntObjectMap<Integer> map = new IntObjectMap<>(2);
+        // action codes differ in their high bits, which must not all end up in one slot
+        for (int type = 0; type < 4; type++) {
+            for (int payload = 0; payload < 100; payload++) {
+                int key = (type << 26) | payload;
+                map.put(key, key);
+            }
+        }
+        assertTrue(map.capacity() >= 2 * map.size());
+        int found = 0;
+        for (int slot = 0; slot < map.capacity(); slot++) {
+            if (map.keyAt(slot) != -1) {
+                assertEquals(map.keyAt(slot), map.valueAt(slot));
+                found++;
+            }
+        }
+        assertEquals(400, found);
+        assertEquals(400, map.size());
+    }
+
+    @Test
+    void emptyMapHasNoKeys() {
+        IntObjectMap<String> map = new IntObjectMap<>();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(0));
+        assertFalse(map.containsKey(7));
+        assertThrows(IllegalArgumentException.class, () -> map.put(-1, "negative"));
+        assertTrue(map.isEmpty());
+    }
+}
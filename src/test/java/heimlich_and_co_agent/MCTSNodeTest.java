@@ -0,0 +1,124 @@
+package heimlich_and_co_agent;
+
+import at.ac.tuwien.ifs.sge.util.pair.Pair;
+import heimlich_and_co.HeimlichAndCo;
+import heimlich_and_co.actions.HeimlichAndCoAction;
+import heimlich_and_co.actions.HeimlichAndCoDieRollAction;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks how proven outcomes move up the tree: a decision is solved by a child that wins for the acting player, and a
+ * die roll by the average of its outcomes, while it still draws every outcome as often as it is rolled.
+ */
+class MCTSNodeTest {
+
+    /**
+     * Faces of the die: 2 to 6, and one on which the player chooses to move 1 or 3 steps.
+     */
+    private static final int[] FACES = {13, 2, 3, 4, 5, 6};
+    private static final int DRAWS = 6_000;
+    private static final double DELTA = 0.03;
+
+    /**
+     * Keeps every move, so the winning moves are searched.
+     */
+    private final SearchParameters parameters = SearchParameters.defaults().with(SearchParameters.PRUNE_THRESHOLD, 1_000);
+
+    @Test
+    void decisionIsSolvedByAWinningChild() {
+        // the agent of player 0 reaches the safe three fields ahead and wins
+        HeimlichAndCo game = dieRolls(TestGames.position(3, new int[]{4, 0, 0, 0, 0}, new int[]{40, 10, 10, 10, 10}, 7));
+        game.applyAction(new HeimlichAndCoDieRollAction(3));
+        MCTSNode root = new MCTSNode(game, 0, null, parameters, new Random(42));
+        root.selection(true);
+        assertFalse(root.isSolved());
+
+        MCTSNode child = root.expansion(winningMove(game));
+        assertTrue(child.isSolved());
+        assertTrue(root.isSolved());
+        assertArrayEquals(child.getSolvedRewards(), root.getSolvedRewards());
+        // a proven node is not searched anymore
+        Pair<MCTSNode, HeimlichAndCoAction> selected = root.selection(true);
+        assertSame(root, selected.getA());
+        assertNull(selected.getB());
+    }
+
+    @Test
+    void dieRollIsSolvedOnceEveryOutcomeIs() {
+        // the agent of player 0 reaches the safe one field ahead with every face
+        HeimlichAndCo game = dieRolls(TestGames.position(3, new int[]{6, 0, 0, 0, 0}, new int[]{40, 10, 10, 10, 10}, 7));
+        MCTSNode root = new MCTSNode(game, 0, null, parameters, new Random(42));
+        root.selection(true);
+        for (int face : FACES) {
+            assertFalse(root.isSolved());
+            solveOutcome(root, face);
+        }
+        assertTrue(root.isSolved());
+        assertEquals(parameters.getWinUtility(), root.getSolvedRewards()[0], 1e-9);
+    }
+
+    @Test
+    void dieRollDrawsTheSolvedOutcomesToo() {
+        // every face but 2 lets player 0 win
+        HeimlichAndCo game = dieRolls(TestGames.position(3, new int[]{4, 0, 0, 0, 0}, new int[]{40, 10, 10, 10, 10}, 7));
+        MCTSNode root = new MCTSNode(game, 0, null, parameters, new Random(42));
+        root.selection(true);
+        for (int face : FACES) {
+            if (face != 2) {
+                solveOutcome(root, face);
+            }
+        }
+        assertFalse(root.isSolved());
+
+        double[] lost = new double[game.getNumberOfPlayers()];
+        for (int draw = 0; draw < DRAWS; draw++) {
+            Pair<MCTSNode, HeimlichAndCoAction> selected = root.selection(true);
+            if (selected.getB() == null) {
+                // a solved outcome: its proven reward is backed up
+                MCTSNode outcome = selected.getA();
+                assertTrue(outcome.isSolved());
+                outcome.backpropagation(outcome.getSolvedRewards(), 1);
+            } else {
+                // an open outcome, played out as a loss
+                assertSame(root, selected.getA());
+                root.backpropagation(lost, 1);
+            }
+        }
+        // the value of the die roll is its expectation over all six faces
+        assertEquals(DRAWS, root.getPlayouts());
+        assertEquals(5.0 / 6 * parameters.getWinUtility(), root.getReward(0) / root.getPlayouts(), DELTA);
+    }
+
+    private void solveOutcome(MCTSNode root, int face) {
+        MCTSNode outcome = root.expansion(new HeimlichAndCoDieRollAction(face));
+        outcome.selection(true);
+        outcome.expansion(winningMove(outcome.getGame()));
+        assertTrue(outcome.isSolved(), () -> "face " + face);
+        assertNotNull(root.getChild(new HeimlichAndCoDieRollAction(face)));
+    }
+
+    private HeimlichAndCoAction winningMove(HeimlichAndCo game) {
+        for (HeimlichAndCoAction action : ActionCodec.sortByCode(game.getPossibleActions())) {
+            HeimlichAndCo next = game.doAction(action);
+            if (next.isGameOver() && MCTSNode.outcome(next, parameters)[0] == parameters.getWinUtility()) {
+                return action;
+            }
+        }
+        throw new IllegalArgumentException("Player 0 cannot win now");
+    }
+
+    private static HeimlichAndCo dieRolls(HeimlichAndCo game) {
+        game.setAllowCustomDieRolls(true);
+        return game;
+    }
+}
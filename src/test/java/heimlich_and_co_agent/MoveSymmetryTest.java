@@ -0,0 +1,77 @@
+package heimlich_and_co_agent;
+
+import heimlich_and_co.HeimlichAndCo;
+import heimlich_and_co.actions.HeimlichAndCoAgentMoveAction;
+import heimlich_and_co.actions.HeimlichAndCoDieRollAction;
+import heimlich_and_co.enums.Agent;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Checks which agents {@link MoveSymmetry} treats as interchangeable and that equivalent moves share one code.
+ */
+class MoveSymmetryTest {
+
+    private static final int NO_MOVE = ActionCodec.encode(HeimlichAndCoAgentMoveAction.getNoMoveAction());
+
+    /**
+     * Players 0 to 2 own the first three agents. Of the others, the fourth and the fifth share field and score with
+     * each other (and with the owned third one); the sixth is on the same field with another score.
+     */
+    private static final HeimlichAndCo GAME = TestGames.position(3, new int[]{0, 1, 2, 2, 2, 2}, new int[]{0, 0, 5, 5, 5, 6}, 7);
+
+    private static final Agent OWNED = Agent.values()[2];
+    private static final Agent FIRST = Agent.values()[3];
+    private static final Agent SECOND = Agent.values()[4];
+    private static final Agent OTHER_SCORE = Agent.values()[5];
+
+    @Test
+    void equivalentMovesShareTheirCode() {
+        MoveSymmetry symmetry = MoveSymmetry.of(GAME);
+        assertFalse(symmetry.isEmpty());
+        assertEquals(symmetry.canonicalize(move(FIRST, 1)), symmetry.canonicalize(move(SECOND, 1)));
+        assertEquals(symmetry.canonicalize(move(FIRST, 2, SECOND, 1)), symmetry.canonicalize(move(FIRST, 1, SECOND, 2)));
+        assertNotEquals(symmetry.canonicalize(move(FIRST, 2)), symmetry.canonicalize(move(FIRST, 1, SECOND, 1)));
+    }
+
+    @Test
+    void ownedAgentsAndOtherScoresAreNotInterchangeable() {
+        MoveSymmetry symmetry = MoveSymmetry.of(GAME);
+        assertEquals(move(OWNED, 1), symmetry.canonicalize(move(OWNED, 1)));
+        assertEquals(move(OTHER_SCORE, 1), symmetry.canonicalize(move(OTHER_SCORE, 1)));
+        assertNotEquals(symmetry.canonicalize(move(OWNED, 1)), symmetry.canonicalize(move(FIRST, 1)));
+    }
+
+    @Test
+    void canonicalizationIsIdempotent() {
+        MoveSymmetry symmetry = MoveSymmetry.of(GAME);
+        int canonical = symmetry.canonicalize(move(FIRST, 3, SECOND, 1));
+        assertEquals(canonical, symmetry.canonicalize(canonical));
+    }
+
+    @Test
+    void otherActionsAreUnchanged() {
+        MoveSymmetry symmetry = MoveSymmetry.of(GAME);
+        int roll = ActionCodec.encode(new HeimlichAndCoDieRollAction(4));
+        assertEquals(roll, symmetry.canonicalize(roll));
+        assertEquals(NO_MOVE, symmetry.canonicalize(NO_MOVE));
+    }
+
+    @Test
+    void positionWithoutTwinsHasNoSymmetry() {
+        HeimlichAndCo game = TestGames.position(3, new int[]{0, 0, 0, 1, 2}, new int[]{0, 0, 0, 0, 0}, 7);
+        assertSame(MoveSymmetry.NONE, MoveSymmetry.of(game));
+    }
+
+    private static int move(Agent agent, int steps) {
+        return ActionCodec.withSteps(NO_MOVE, agent, steps);
+    }
+
+    private static int move(Agent first, int firstSteps, Agent second, int secondSteps) {
+        return ActionCodec.withSteps(move(first, firstSteps), second, secondSteps);
+    }
+}
@@ -0,0 +1,78 @@
+package heimlich_and_co_agent;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the file format of {@link OpponentProfiles} and that recording games merges them into the stored sums.
+ */
+class OpponentProfilesTest {
+
+    private static final double DELTA = 1e-9;
+
+    @Test
+    void recordedGamesAreMerged(@TempDir Path directory) throws IOException {
+        Path path = directory.resolve("profiles.bin");
+        OpponentProfiles.record(path, Map.of("alice", OpponentProfiles.Profile.ofGame(10, 0.5, 2, 4, 1)));
+        OpponentProfiles.record(path, Map.of(
+                "alice", OpponentProfiles.Profile.ofGame(30, 0.9, 3, 0, 0),
+                OpponentProfiles.UNKNOWN, OpponentProfiles.Profile.ofGame(5, 0.2, 0, 2, 2)));
+
+        OpponentProfiles profiles = OpponentProfiles.read(path);
+        assertEquals(2, profiles.size());
+        OpponentProfiles.Profile alice = profiles.get("alice");
+        assertEquals(2, alice.getGames());
+        // averages over all turns and card decisions, not over the games
+        assertEquals((10 * 0.5 + 30 * 0.9) / 40, alice.getConcentration(), DELTA);
+        assertEquals(5.0 / 40, alice.getBurstRate(), DELTA);
+        assertEquals(1.0 / 4, alice.getCardPlayRate(), DELTA);
+        assertEquals(1, profiles.get(OpponentProfiles.UNKNOWN).getGames());
+        assertNull(profiles.get("bob"));
+    }
+
+    @Test
+    void fileHoldsTheSumsOfEveryProfile(@TempDir Path directory) throws IOException {
+        Path path = directory.resolve("profiles.bin");
+        OpponentProfiles.record(path, Map.of("alice", OpponentProfiles.Profile.ofGame(10, 0.5, 2, 4, 1)));
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(path)))) {
+            assertEquals(0x44474F50, in.readInt()); // "DGOP"
+            assertEquals(1, in.readInt());
+            assertEquals(1, in.readInt());
+            assertEquals("alice", in.readUTF());
+            assertEquals(1, in.readInt());
+            assertEquals(10, in.readInt());
+            assertEquals(5.0, in.readDouble(), DELTA);
+            assertEquals(2, in.readInt());
+            assertEquals(4, in.readInt());
+            assertEquals(1, in.readInt());
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    void missingFileHasNoProfiles(@TempDir Path directory) throws IOException {
+        assertEquals(0, OpponentProfiles.read(directory.resolve("missing.bin")).size());
+    }
+
+    @Test
+    void otherFilesAreRejected(@TempDir Path directory) throws IOException {
+        Path path = directory.resolve("other.bin");
+        Files.write(path, "not a profile store".getBytes());
+        assertThrows(IOException.class, () -> OpponentProfiles.read(path));
+        assertThrows(IOException.class, () -> OpponentProfiles.record(path, Map.of()));
+        assertTrue(Files.exists(path));
+    }
+}
@@ -0,0 +1,100 @@
+package heimlich_and_co_agent;
+
+import heimlich_and_co.HeimlichAndCo;
+import heimlich_and_co.actions.HeimlichAndCoAgentMoveAction;
+import heimlich_and_co.actions.HeimlichAndCoDieRollAction;
+import heimlich_and_co.enums.Agent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/**
+ * The opening book is keyed by the hashes of {@link StateHasher}, so they must be the same in every JVM and for every
+ * way a position is reached.
+ */
+class StateHasherTest {
+
+    /**
+     * Hash of {@link #position()}. If it changes, every opening book written before has to be generated again.
+     */
+    private static final long POSITION_HASH = 0x230982BF62ED7B72L;
+
+    @Test
+    void hashOfAFixedPositionNeverChanges() {
+        assertEquals(POSITION_HASH, StateHasher.hash(position()));
+    }
+
+    @Test
+    void hashDependsOnThePositionOnly() {
+        HeimlichAndCo first = rolled(position());
+        HeimlichAndCo second = rolled(position());
+        first.applyAction(move(Agent.values()[1], 2, Agent.values()[2], 1));
+        second.applyAction(move(Agent.values()[1], 2, Agent.values()[2], 1));
+        assertEquals(StateHasher.hash(first), StateHasher.hash(second));
+
+        // the history is not hashed, so the search can clear it
+        HeimlichAndCo copy = new HeimlichAndCo(first);
+        copy.getActionRecords().clear();
+        assertEquals(StateHasher.hash(first), StateHasher.hash(copy));
+        assertNotEquals(StateHasher.hash(first), StateHasher.hash(rolled(position())));
+    }
+
+    @Test
+    void informationSetIgnoresTheAgentsOfTheOthers() {
+        HeimlichAndCo game = position();
+        HeimlichAndCo swapped = position();
+        swapped.getPlayersToAgentsMap().put(1, Agent.values()[4]);
+        assertNotEquals(StateHasher.hash(game), StateHasher.hash(swapped));
+        assertEquals(StateHasher.hashInformationSet(game, 0), StateHasher.hashInformationSet(swapped, 0));
+        assertNotEquals(StateHasher.hashInformationSet(game, 1), StateHasher.hashInformationSet(swapped, 1));
+    }
+
+    @Test
+    void openingBookFindsThePositionsItWasWrittenFor(@TempDir Path directory) throws IOException {
+        HeimlichAndCo game = rolled(position());
+        HeimlichAndCo other = rolled(position());
+        other.applyAction(move(Agent.values()[3], 3, null, 0));
+        Map<Long, Integer> entries = new TreeMap<>();
+        entries.put(StateHasher.hash(game), ActionCodec.encode(move(Agent.values()[0], 3, null, 0)));
+        entries.put(StateHasher.hash(other), ActionCodec.encode(HeimlichAndCoAgentMoveAction.getNoMoveAction()));
+
+        Path path = directory.resolve("test.book");
+        OpeningBook.write(entries, path);
+        OpeningBook book = OpeningBook.open(path);
+        assertEquals(2, book.size());
+        // a position reached again, in a new game object, finds its entry
+        assertEquals(entries.get(StateHasher.hash(game)), book.lookup(StateHasher.hash(rolled(position()))));
+        assertEquals(entries.get(StateHasher.hash(other)), book.lookup(StateHasher.hash(other)));
+        assertEquals(OpeningBook.NOT_FOUND, book.lookup(StateHasher.hash(position())));
+    }
+
+    /**
+     * Three players, no cards: the first agent is about to win, the others are in the church.
+     */
+    private static HeimlichAndCo position() {
+        return TestGames.position(3, new int[]{4, 0, 0, 0, 0}, new int[]{40, 10, 10, 10, 10}, 7);
+    }
+
+    private static HeimlichAndCo rolled(HeimlichAndCo game) {
+        game.setAllowCustomDieRolls(true);
+        game.applyAction(new HeimlichAndCoDieRollAction(3));
+        return game;
+    }
+
+    private static HeimlichAndCoAgentMoveAction move(Agent first, int firstSteps, Agent second, int secondSteps) {
+        Map<Agent, Integer> moves = new EnumMap<>(Agent.class);
+        moves.put(first, firstSteps);
+        if (second != null) {
+            moves.put(second, secondSteps);
+        }
+        return new HeimlichAndCoAgentMoveAction(moves);
+    }
+}
@@ -0,0 +1,42 @@
+package heimlich_and_co_agent;
+
+import heimlich_and_co.HeimlichAndCo;
+import heimlich_and_co.HeimlichAndCoBoard;
+import heimlich_and_co.enums.Agent;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builds games in a given position without dealing or drawing anything, so tests do not depend on random numbers.
+ */
+final class TestGames {
+
+    private TestGames() {
+    }
+
+    /**
+     * A game without cards at the die roll of player 0, in which player i owns the i-th agent (in ordinal order).
+     *
+     * @param fields field of every agent in the game, the length is the number of agents (5 to 7)
+     * @param scores score of every agent
+     * @param safe   field of the safe
+     */
+    static HeimlichAndCo position(int numberOfPlayers, int[] fields, int[] scores, int safe) {
+        Map<Agent, Integer> positions = new EnumMap<>(Agent.class);
+        Map<Agent, Integer> agentScores = new EnumMap<>(Agent.class);
+        for (int i = 0; i < fields.length; i++) {
+            positions.put(Agent.values()[i], fields[i]);
+            agentScores.put(Agent.values()[i], scores[i]);
+        }
+        HeimlichAndCoBoard board = new HeimlichAndCoBoard(positions, agentScores);
+        board.moveSafe(safe);
+        Map<Integer, Agent> playersToAgents = new HashMap<>();
+        for (int player = 0; player < numberOfPlayers; player++) {
+            playersToAgents.put(player, Agent.values()[player]);
+        }
+        return new HeimlichAndCo(0, numberOfPlayers, new ArrayList<>(), board, playersToAgents, false);
+    }
+}
@@ -0,0 +1,143 @@
+package heimlich_and_co_tools;
+
+import at.ac.tuwien.ifs.sge.game.ActionRecord;
+import heimlich_and_co.HeimlichAndCo;
+import heimlich_and_co.actions.HeimlichAndCoAction;
+import heimlich_and_co.actions.HeimlichAndCoDieRollAction;
+import heimlich_and_co.enums.Agent;
+import heimlich_and_co_agent.ActionCodec;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Writes games with {@link GameRecordWriter} and reads them back with {@link GameRecordReader}.
+ */
+class GameRecordWriterTest {
+
+    @Test
+    void gamesAreReadAsTheyWereWritten(@TempDir Path directory) throws IOException {
+        Path path = directory.resolve("games.log");
+        Random random = new Random(42);
+        HeimlichAndCo first = randomGame(3, random);
+        HeimlichAndCo second = randomGame(4, random);
+        // a second writer appends to the log of the first
+        try (GameRecordWriter writer = GameRecordWriter.open(path)) {
+            append(writer, first);
+        }
+        try (GameRecordWriter writer = GameRecordWriter.open(path)) {
+            append(writer, second);
+        }
+
+        try (GameRecordReader reader = GameRecordReader.open(path)) {
+            GameRecordReader.Cursor cursor = reader.cursor();
+            assertTrue(cursor.next());
+            assertGame(first, cursor);
+            assertTrue(cursor.next());
+            assertGame(second, cursor);
+            assertFalse(cursor.next());
+        }
+    }
+
+    @Test
+    void gamesHaveTheDocumentedSize(@TempDir Path directory) throws IOException {
+        Path path = directory.resolve("games.log");
+        HeimlichAndCo game = randomGame(3, new Random(42));
+        try (GameRecordWriter writer = GameRecordWriter.open(path)) {
+            assertEquals(GameRecordWriter.HEADER_SIZE, Files.size(path));
+            append(writer, game);
+        }
+        long gameSize = Integer.BYTES + 2 * Byte.BYTES + 3 * GameRecordWriter.PLAYER_SIZE + Integer.BYTES
+                + game.getActionRecords().size() * (long) GameRecordWriter.ACTION_SIZE;
+        assertEquals(GameRecordWriter.HEADER_SIZE + gameSize, Files.size(path));
+    }
+
+    @Test
+    void otherFilesAreRejected(@TempDir Path directory) throws IOException {
+        Path path = directory.resolve("other.log");
+        Files.write(path, new byte[]{1, 2, 3});
+        assertThrows(IOException.class, () -> GameRecordWriter.open(path));
+        assertThrows(IOException.class, () -> GameRecordReader.open(path));
+    }
+
+    @Test
+    void logsOfAnotherVersionAreNotAppendedTo(@TempDir Path directory) throws IOException {
+        Path otherMagic = directory.resolve("other-magic.log");
+        Path otherVersion = directory.resolve("other-version.log");
+        Files.write(otherMagic, ByteBuffer.allocate(GameRecordWriter.HEADER_SIZE).putInt(0x12345678).putInt(GameRecordWriter.VERSION).array());
+        Files.write(otherVersion, ByteBuffer.allocate(GameRecordWriter.HEADER_SIZE).putInt(GameRecordWriter.MAGIC).putInt(GameRecordWriter.VERSION + 1).array());
+        assertThrows(IOException.class, () -> GameRecordWriter.open(otherMagic));
+        assertThrows(IOException.class, () -> GameRecordWriter.open(otherVersion));
+        assertEquals(GameRecordWriter.HEADER_SIZE, Files.size(otherMagic));
+        assertEquals(GameRecordWriter.HEADER_SIZE, Files.size(otherVersion));
+    }
+
+    private static void assertGame(HeimlichAndCo game, GameRecordReader.Cursor cursor) {
+        assertEquals(game.getNumberOfPlayers(), cursor.getNumberOfPlayers());
+        assertTrue(cursor.isWithCards());
+        for (int player = 0; player < game.getNumberOfPlayers(); player++) {
+            Agent agent = game.getPlayersToAgentsMap().get(player);
+            assertEquals(agentType(player), cursor.getAgentType(player));
+            assertEquals(agent.ordinal(), cursor.getAgentOrdinal(player));
+            assertEquals(game.getBoard().getScores().get(agent), cursor.getFinalScore(player));
+        }
+        List<ActionRecord<HeimlichAndCoAction>> records = game.getActionRecords();
+        assertEquals(records.size(), cursor.getNumberOfActions());
+        for (int i = 0; i < records.size(); i++) {
+            HeimlichAndCoAction action = records.get(i).getAction();
+            int code = action instanceof HeimlichAndCoDieRollAction
+                    // die rolls are stored with the face that was rolled
+                    ? ActionCodec.encode(new HeimlichAndCoDieRollAction(ActionCodec.getRolledValue((HeimlichAndCoDieRollAction) action)))
+                    : ActionCodec.encode(action);
+            assertEquals(records.get(i).getPlayer(), cursor.getPlayer(i));
+            assertEquals(code, cursor.getActionCode(i));
+            assertEquals(i % 2 == 0 ? i : -1, cursor.getRootPlayouts(i));
+            assertEquals(i % 2 == 0 ? i / 2f : Float.NaN, cursor.getRootValue(i));
+        }
+    }
+
+    /**
+     * Appends the game with made up statistics: the even records have a search, the odd ones not.
+     */
+    private static void append(GameRecordWriter writer, HeimlichAndCo game) throws IOException {
+        int records = game.getActionRecords().size();
+        int[] rootPlayouts = new int[records];
+        float[] rootValues = new float[records];
+        Arrays.fill(rootPlayouts, -1);
+        Arrays.fill(rootValues, Float.NaN);
+        for (int i = 0; i < records; i += 2) {
+            rootPlayouts[i] = i;
+            rootValues[i] = i / 2f;
+        }
+        byte[] agentTypes = new byte[game.getNumberOfPlayers()];
+        for (int player = 0; player < agentTypes.length; player++) {
+            agentTypes[player] = agentType(player);
+        }
+        writer.append(game, agentTypes, rootPlayouts, rootValues);
+    }
+
+    private static byte agentType(int player) {
+        return player == 0 ? GameRecordWriter.DETECTIVE_GOETZBACH : GameRecordWriter.MCTS_AGENT;
+    }
+
+    private static HeimlichAndCo randomGame(int numberOfPlayers, Random random) {
+        HeimlichAndCo game = new HeimlichAndCo("cards", numberOfPlayers);
+        while (!game.isGameOver()) {
+            HeimlichAndCoAction[] actions = ActionCodec.sortByCode(game.getPossibleActions());
+            game.applyAction(actions[random.nextInt(actions.length)]);
+        }
+        return game;
+    }
+}